@@ -32,6 +32,11 @@ android {
         targetCompatibility = JavaVersion.VERSION_11
     }
 
+    testOptions {
+        // android.util.Log and friends are stubs on the host; let them return defaults
+        unitTests.isReturnDefaultValues = true
+    }
+
     packagingOptions {
         resources {
             excludes.addAll(listOf(
@@ -74,6 +79,8 @@ dependencies {
     implementation(libs.activity)
     implementation(libs.constraintlayout)
     testImplementation(libs.junit)
+    // org.json in android.jar is a stub; GalleryStore parses the base file with it
+    testImplementation("org.json:json:20231013")
     androidTestImplementation(libs.ext.junit)
     androidTestImplementation(libs.espresso.core)
 }
@@ -22,9 +22,10 @@ import android.widget.Toast;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import androidx.appcompat.app.AlertDialog;
+import androidx.annotation.OptIn;
 import androidx.camera.core.CameraSelector;
-import androidx.camera.core.ImageCapture;
-import androidx.camera.core.ImageCaptureException;
+import androidx.camera.core.ExperimentalGetImage;
+import androidx.camera.core.ImageAnalysis;
 import androidx.camera.core.ImageProxy;
 import androidx.camera.core.Preview;
 import androidx.camera.lifecycle.ProcessCameraProvider;
@@ -37,19 +38,26 @@ import com.google.android.gms.common.api.ApiException;
 import com.google.android.gms.common.api.Scope;
 import com.google.android.gms.tasks.Task;
 import com.google.api.services.drive.DriveScopes;
-import com.google.gson.Gson;
+import com.google.mlkit.vision.common.InputImage;
+import com.google.mlkit.vision.face.Face;
+import com.google.mlkit.vision.face.FaceDetection;
+import com.google.mlkit.vision.face.FaceDetector;
+import com.google.mlkit.vision.face.FaceDetectorOptions;
+import com.google.mlkit.vision.face.FaceLandmark;
 import com.sd.facultyfacialrecognition.FaceAligner;
 import com.sd.facultyfacialrecognition.FaceNet;
 
 import java.io.File;
 import java.io.FileOutputStream;
-import java.io.FileWriter;
 import java.io.InputStream;
 import java.io.OutputStream;
-import java.nio.ByteBuffer;
 import java.util.*;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
 
 import android.app.ProgressDialog;
 import android.graphics.drawable.BitmapDrawable;
@@ -62,6 +70,7 @@ import android.os.Handler;
 import android.os.Looper;
 
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntConsumer;
 
 public class AdminActivity extends BaseDrawerActivity {
 
@@ -70,7 +79,19 @@ public class AdminActivity extends BaseDrawerActivity {
     private static final int REQUEST_CODE_SIGN_IN = 2001;
     private static final int REQUEST_CODE_PICK_IMAGES = 3001;
     private static final int NUM_PHOTOS_TO_CAPTURE = 10;
-    private static final long CAPTURE_INTERVAL_MS = 1;
+    private static final long ENROLL_MIN_DURATION_MS = 2000;
+    private static final long ENROLL_MAX_DURATION_MS = 6000;
+    private static final int IMPORT_MAX_DIMENSION = 1024;
+    private static final int IMPORT_THREADS = Math.max(2, Math.min(4, Runtime.getRuntime().availableProcessors()));
+    // Decoded photos alive at once (being detected, or waiting for a worker)
+    private static final int IMPORT_IN_FLIGHT = IMPORT_THREADS * 2;
+    private static final int EMBED_IN_FLIGHT = 3;
+    // Upper bound on stored samples per faculty, however many photos were uploaded
+    private static final int MAX_SAMPLES_PER_FACULTY = 8;
+
+    private static final int IMPORT_SAVED = 0;
+    private static final int IMPORT_SKIPPED = 1;
+    private static final int IMPORT_QUEUED = 2;
 
     private Button buttonAddFaculty, buttonDeleteFaculty, buttonImportDrive, buttonGenerateEmbeddings;
     private TextView textStatus;
@@ -80,13 +101,20 @@ public class AdminActivity extends BaseDrawerActivity {
     private File currentFacultyDir;
     private int photoCount = 0;
 
-    private ImageCapture imageCapture;
     private ExecutorService cameraExecutor;
+    private ProcessCameraProvider cameraProvider;
+    private ImageAnalysis enrollmentAnalysis;
+    private FaceDetector enrollmentDetector;
+    private final ImageAligner imageAligner = new ImageAligner();
+    private final EnrollmentSelector enrollmentSelector = new EnrollmentSelector();
+    private volatile boolean enrollmentFinished = true;
+    private long enrollmentStartMillis;
 
     private FaceAligner faceAligner;
     private FaceNet faceNet;
 
     private GoogleSignInClient googleSignInClient;
+    private GalleryStore galleryStore;
 
     @Override
     protected void onCreate(@Nullable Bundle savedInstanceState) {
@@ -103,8 +131,16 @@ public class AdminActivity extends BaseDrawerActivity {
         cameraExecutor = Executors.newSingleThreadExecutor();
         faceAligner = new FaceAligner(this);
 
+        // Landmarks for eye alignment; head angles come with every detected face
+        enrollmentDetector = FaceDetection.getClient(new FaceDetectorOptions.Builder()
+                .setPerformanceMode(FaceDetectorOptions.PERFORMANCE_MODE_FAST)
+                .setLandmarkMode(FaceDetectorOptions.LANDMARK_MODE_ALL)
+                .setClassificationMode(FaceDetectorOptions.CLASSIFICATION_MODE_NONE)
+                .build());
+        galleryStore = GalleryRepository.getInstance(this).getStore();
+
         try {
-            faceNet = new FaceNet(this, "facenet.tflite");
+            faceNet = FaceNet.shared(this);
         } catch (Exception e) {
             e.printStackTrace();
             textStatus.setText("FaceNet model load failed!");
@@ -254,47 +290,24 @@ public class AdminActivity extends BaseDrawerActivity {
     // -------------------- Remove Faculty from Embeddings --------------------
     private void removeFacultyFromEmbeddings(String facultyName) {
         try {
-            File embeddingsFile = new File(
-                    getExternalFilesDir(Environment.DIRECTORY_PICTURES),
-                    "FacultyPhotos/embeddings.json"
-            );
-
-            if (!embeddingsFile.exists()) {
+            if (!galleryStore.exists()) {
                 Log.e("Embeddings", "Embeddings file not found!");
                 return;
             }
 
-            // Read JSON file
-            StringBuilder jsonBuilder = new StringBuilder();
-            Scanner scanner = new Scanner(embeddingsFile);
-            while (scanner.hasNextLine()) {
-                jsonBuilder.append(scanner.nextLine());
-            }
-            scanner.close();
-
-            String jsonString = jsonBuilder.toString();
-            if (jsonString.isEmpty()) {
-                Log.e("Embeddings", "Embeddings file empty!");
-                return;
-            }
-
-            // Parse and remove faculty entry
-            Gson gson = new Gson();
-            Map<String, List<float[]>> allEmbeddings = gson.fromJson(
-                    jsonString,
-                    new com.google.gson.reflect.TypeToken<Map<String, List<float[]>>>(){}.getType()
-            );
-
-            if (allEmbeddings != null && allEmbeddings.containsKey(facultyName)) {
-                allEmbeddings.remove(facultyName);
-                Log.d("Embeddings", "Removed faculty from embeddings: " + facultyName);
-
-                // Write updated JSON back
-                try (FileWriter writer = new FileWriter(embeddingsFile)) {
-                    gson.toJson(allEmbeddings, writer);
-                }
-            } else {
-                Log.d("Embeddings", "Faculty not found in embeddings: " + facultyName);
+            // One tombstone append; the gallery file itself is never rewritten in place
+            galleryStore.delete(facultyName);
+            Log.d("Embeddings", "Removed faculty from embeddings: " + facultyName);
+            GalleryRepository.notifyGalleryChanged();
+
+            if (galleryStore.needsCompaction()) {
+                new Thread(() -> {
+                    try {
+                        galleryStore.compact();
+                    } catch (Exception e) {
+                        Log.e("Embeddings", "Gallery compaction failed: " + e.getMessage());
+                    }
+                }).start();
             }
 
         } catch (Exception e) {
@@ -304,6 +317,8 @@ public class AdminActivity extends BaseDrawerActivity {
     }
 
     // -------------------- CameraX --------------------
+    // Streams analysis frames for a few seconds and keeps the sharpest faces over distinct
+    // head poses, instead of JPEG-capturing and re-decoding individual shots.
     private void startCameraForFaculty() {
         ProcessCameraProvider.getInstance(this).addListener(() -> {
             try {
@@ -312,56 +327,103 @@ public class AdminActivity extends BaseDrawerActivity {
                 Preview preview = new Preview.Builder().build();
                 preview.setSurfaceProvider(previewView.getSurfaceProvider());
 
-                imageCapture = new ImageCapture.Builder().build();
+                enrollmentAnalysis = new ImageAnalysis.Builder()
+                        .setBackpressureStrategy(ImageAnalysis.STRATEGY_KEEP_ONLY_LATEST)
+                        .build();
                 CameraSelector cameraSelector = CameraSelector.DEFAULT_FRONT_CAMERA;
 
+                enrollmentSelector.clear();
+                enrollmentFinished = false;
+                enrollmentStartMillis = System.currentTimeMillis();
+                enrollmentAnalysis.setAnalyzer(cameraExecutor, this::analyzeEnrollmentFrame);
+
                 cameraProvider.unbindAll();
-                cameraProvider.bindToLifecycle(this, cameraSelector, preview, imageCapture);
+                cameraProvider.bindToLifecycle(this, cameraSelector, preview, enrollmentAnalysis);
+                this.cameraProvider = cameraProvider;
 
-                textStatus.setText("Camera ready. Capturing photos automatically...");
-                captureNextPhoto();
+                textStatus.setText("Camera ready. Look at the camera and turn your head slowly...");
             } catch (Exception e) {
                 textStatus.setText("Camera init failed: " + e.getMessage());
             }
         }, ContextCompat.getMainExecutor(this));
     }
 
-    private void captureNextPhoto() {
-        if (photoCount >= NUM_PHOTOS_TO_CAPTURE) {
-            textStatus.setText("All photos captured for: " + currentFacultyName);
-            Toast.makeText(this, "Photos ready. Press 'Update Dataset' to continue.", Toast.LENGTH_SHORT).show();
+    @OptIn(markerClass = ExperimentalGetImage.class)
+    private void analyzeEnrollmentFrame(ImageProxy image) {
+        android.media.Image mediaImage = image.getImage();
+        if (enrollmentFinished || mediaImage == null) {
+            image.close();
             return;
         }
 
-        imageCapture.takePicture(cameraExecutor, new ImageCapture.OnImageCapturedCallback() {
-            @Override
-            public void onCaptureSuccess(@NonNull ImageProxy imageProxy) {
-                Bitmap bitmap = imageProxyToBitmap(imageProxy);
-                imageProxy.close();
+        InputImage inputImage = InputImage.fromMediaImage(mediaImage, image.getImageInfo().getRotationDegrees());
+        enrollmentDetector.process(inputImage)
+                .addOnCompleteListener(cameraExecutor, task -> {
+                    try {
+                        if (task.isSuccessful()) collectEnrollmentFace(task.getResult(), inputImage);
+                        else Log.e("Enrollment", "Face detection failed", task.getException());
+                    } finally {
+                        image.close();
+                    }
+                });
+    }
 
-                if (bitmap == null) {
-                    runOnUiThread(() -> textStatus.setText("Capture failed: empty image."));
-                    return;
+    private void collectEnrollmentFace(List<Face> faces, InputImage inputImage) {
+        if (enrollmentFinished) return;
+
+        if (faces.size() == 1) {
+            Face face = faces.get(0);
+            FaceLandmark leftEye = face.getLandmark(FaceLandmark.LEFT_EYE);
+            FaceLandmark rightEye = face.getLandmark(FaceLandmark.RIGHT_EYE);
+
+            Bitmap frame = InputImageUtils.getBitmapFromInputImage(this, inputImage);
+            if (frame != null) {
+                Bitmap aligned = imageAligner.alignAndCropFace(frame, face.getBoundingBox(),
+                        leftEye != null ? leftEye.getPosition() : null,
+                        rightEye != null ? rightEye.getPosition() : null);
+                BitmapPool.release(frame);
+
+                if (aligned != null) {
+                    FaceQuality.Score quality = FaceQuality.get().score(aligned, face.getBoundingBox().width());
+                    if (quality.isBlurry()) {
+                        BitmapPool.release(aligned);
+                    } else {
+                        enrollmentSelector.offer(aligned, quality.score,
+                                face.getHeadEulerAngleY(), face.getHeadEulerAngleX());
+                    }
                 }
+            }
+        }
 
-                Bitmap faceBitmap = faceAligner.alignFace(bitmap);
-                if (faceBitmap == null) {
-                    runOnUiThread(() -> textStatus.setText("No face detected, retrying..."));
-                    new android.os.Handler(getMainLooper()).postDelayed(AdminActivity.this::captureNextPhoto, CAPTURE_INTERVAL_MS);
-                    return;
-                }
+        long elapsed = System.currentTimeMillis() - enrollmentStartMillis;
+        int poses = enrollmentSelector.distinctPoses();
+        boolean enough = elapsed >= ENROLL_MIN_DURATION_MS && poses >= NUM_PHOTOS_TO_CAPTURE;
+        if (enough || elapsed >= ENROLL_MAX_DURATION_MS) {
+            finishEnrollment();
+        } else {
+            runOnUiThread(() -> textStatus.setText("Capturing... " + poses + " distinct poses found"));
+        }
+    }
 
-                savePhoto(faceBitmap);
+    private void finishEnrollment() {
+        enrollmentFinished = true;
 
-                photoCount++;
-                runOnUiThread(() -> textStatus.setText("Captured photo " + photoCount + "/" + NUM_PHOTOS_TO_CAPTURE));
-                new android.os.Handler(getMainLooper()).postDelayed(AdminActivity.this::captureNextPhoto, CAPTURE_INTERVAL_MS);
-            }
+        List<Bitmap> best = enrollmentSelector.selectBest(NUM_PHOTOS_TO_CAPTURE);
+        for (Bitmap face : best) {
+            savePhoto(face);
+            BitmapPool.release(face);
+            photoCount++;
+        }
+
+        runOnUiThread(() -> {
+            if (cameraProvider != null && enrollmentAnalysis != null) cameraProvider.unbind(enrollmentAnalysis);
 
-            @Override
-            public void onError(@NonNull ImageCaptureException exception) {
-                runOnUiThread(() -> textStatus.setText("Capture failed: " + exception.getMessage()));
+            if (photoCount == 0) {
+                textStatus.setText("No usable face found for: " + currentFacultyName + ". Please try again.");
+                return;
             }
+            textStatus.setText("All photos captured for: " + currentFacultyName + " (" + photoCount + "/" + NUM_PHOTOS_TO_CAPTURE + ")");
+            Toast.makeText(this, "Photos ready. Press 'Update Dataset' to continue.", Toast.LENGTH_SHORT).show();
         });
     }
 
@@ -377,19 +439,6 @@ public class AdminActivity extends BaseDrawerActivity {
         }
     }
 
-    private Bitmap imageProxyToBitmap(ImageProxy image) {
-        try {
-            ImageProxy.PlaneProxy plane = image.getPlanes()[0];
-            ByteBuffer buffer = plane.getBuffer();
-            byte[] bytes = new byte[buffer.remaining()];
-            buffer.get(bytes);
-            return BitmapFactory.decodeByteArray(bytes, 0, bytes.length);
-        } catch (Exception e) {
-            e.printStackTrace();
-            return null;
-        }
-    }
-
     // -------------------- Google Drive --------------------
     private void promptFacultyNameForDriveImport() {
         AlertDialog.Builder builder = new AlertDialog.Builder(this);
@@ -506,154 +555,208 @@ public class AdminActivity extends BaseDrawerActivity {
 
         final AtomicInteger importedCount = new AtomicInteger(0);
         final AtomicInteger skippedCount = new AtomicInteger(0);
+        final AtomicInteger processedCount = new AtomicInteger(0);
+        // Continue numbering after the existing photos so earlier imports are never overwritten
+        final AtomicInteger nextPhotoIndex = new AtomicInteger(highestPhotoIndex(facultyDir));
+        final PhotoHashIndex hashIndex = new PhotoHashIndex(facultyDir);
+        final ConcurrentLinkedQueue<QueuedPhoto> reviewQueue = new ConcurrentLinkedQueue<>();
+
+        // Decoding runs on the pool while ML Kit detects earlier photos; the semaphore bounds how many
+        // decoded photos are alive at once. Workers never block on detection.
+        ExecutorService exec = Executors.newFixedThreadPool(IMPORT_THREADS);
+        Semaphore inFlight = new Semaphore(IMPORT_IN_FLIGHT);
+        Runnable onPhotoDone = () -> {
+            inFlight.release();
+            int processed = processedCount.incrementAndGet();
+            updateProgressOnUI(progressDialog, processed, importedCount.get(), skippedCount.get());
+            if (processed < uris.size()) return;
 
-        ExecutorService exec = Executors.newSingleThreadExecutor();
+            exec.shutdown();
+            // Photos with several faces were set aside; resolve them all now in one pass
+            mainHandler.post(() -> {
+                progressDialog.dismiss();
+                reviewNextQueuedPhoto(reviewQueue, reviewQueue.size(), facultyDir, nextPhotoIndex, hashIndex, importedCount, skippedCount);
+            });
+        };
 
-        exec.execute(() -> {
-            int counter = 0;
+        new Thread(() -> {
             for (Uri uri : uris) {
-                final int indexForName = ++counter;
-
-                // load -> correct rotation -> detect faces (possibly multiple) -> preview -> save
-                Bitmap original = ImageProcessing.loadBitmapFromUri(this, uri);
-                if (original == null) {
-                    skippedCount.incrementAndGet();
-                    updateProgressOnUI(progressDialog, counter, importedCount.get(), skippedCount.get());
-                    continue;
-                }
-
-                original = ImageProcessing.rotateBitmapIfRequired(this, uri, original);
-
-                // detect faces:
-                List<Bitmap> faces = detectFacesFallback(original);
-
-                if (faces == null || faces.size() == 0) {
-                    // fallback: try single-face alignFace
-                    Bitmap single = faceAligner.alignFace(original);
-                    if (single != null) faces = new ArrayList<>();
-                    if (single != null) faces.add(single);
-                }
-
-                if (faces == null || faces.size() == 0) {
-                    skippedCount.incrementAndGet();
-                    updateProgressOnUI(progressDialog, counter, importedCount.get(), skippedCount.get());
-                    continue;
-                }
+                inFlight.acquireUninterruptibly();
+                exec.execute(() -> importPhoto(uri, exec, facultyDir, nextPhotoIndex, hashIndex, reviewQueue, result -> {
+                    if (result == IMPORT_SAVED) importedCount.incrementAndGet();
+                    else if (result == IMPORT_SKIPPED) skippedCount.incrementAndGet();
+                    onPhotoDone.run();
+                }));
+            }
+        }).start();
+    }
 
-                // If multiple faces -> ask user which to save (on UI thread)
-                Bitmap chosenFace = null;
-                if (faces.size() == 1) {
-                    chosenFace = faces.get(0);
-                } else {
-                    // ask user to pick one (blocking until selection)
-                    chosenFace = promptUserToSelectFace(faces);
-                    if (chosenFace == null) {
-                        skippedCount.incrementAndGet();
-                        updateProgressOnUI(progressDialog, counter, importedCount.get(), skippedCount.get());
-                        continue;
-                    }
-                }
+    // load once -> dHash (skip duplicates) -> decode upright at sample size -> detect faces (async)
+    // -> (queue if ambiguous) -> blur check -> save -> record hash
+    private void importPhoto(Uri uri, Executor exec, File facultyDir, AtomicInteger nextPhotoIndex, PhotoHashIndex hashIndex,
+                             ConcurrentLinkedQueue<QueuedPhoto> reviewQueue, IntConsumer done) {
+        Bitmap original;
+        Long hash = null;
+        try {
+            byte[] bytes = ImageProcessing.readBytes(this, uri);
+            if (bytes == null) {
+                done.accept(IMPORT_SKIPPED);
+                return;
+            }
+            // Same picture already imported for this faculty (possibly re-encoded): skip before any decode or detection
+            Long photoHash = PhotoHashIndex.dHash(bytes);
+            if (photoHash != null && !hashIndex.claim(photoHash)) {
+                Log.d("Import", "Skipping duplicate photo " + uri);
+                done.accept(IMPORT_SKIPPED);
+                return;
+            }
+            hash = photoHash;
+            original = ImageProcessing.decodeUpright(bytes, IMPORT_MAX_DIMENSION);
+        } catch (Exception e) {
+            e.printStackTrace();
+            original = null;
+        }
+        if (original == null) {
+            hashIndex.finish(hash, false);
+            done.accept(IMPORT_SKIPPED);
+            return;
+        }
 
-                // blur detection
-                if (ImageProcessing.isBlurry(chosenFace)) {
-                    // skip blurry
-                    skippedCount.incrementAndGet();
-                    updateProgressOnUI(progressDialog, counter, importedCount.get(), skippedCount.get());
-                    continue;
+        final Bitmap photo = original;
+        final Long claimed = hash;
+        faceAligner.detectFacesAsync(photo).addOnCompleteListener(exec, task -> {
+            int result = IMPORT_SKIPPED;
+            try {
+                List<Bitmap> faces = task.isSuccessful() ? task.getResult() : null;
+                if (faces == null || faces.isEmpty()) {
+                    // fallback: android.media.FaceDetector
+                    faces = detectFacesFallback(photo);
                 }
-
-                // resize to FaceNet expected size
-                Bitmap resized = ImageProcessing.resize(chosenFace, 160, 160);
-
-                // Save file
-                try {
-                    File outFile = new File(facultyDir, "photo_" + (importedCount.get() + 1) + ".jpg");
-                    FileOutputStream fos = new FileOutputStream(outFile);
-                    resized.compress(Bitmap.CompressFormat.JPEG, 100, fos);
-                    fos.close();
-                    importedCount.incrementAndGet();
-                } catch (Exception e) {
-                    e.printStackTrace();
-                    skippedCount.incrementAndGet();
+                // Faces are separate crops, the full photo is no longer needed
+                if (faces == null || !faces.contains(photo)) BitmapPool.release(photo);
+
+                if (faces != null && faces.size() > 1) {
+                    // If multiple faces -> the admin picks later; this worker moves on to the next photo
+                    reviewQueue.add(new QueuedPhoto(faces, claimed));
+                    result = IMPORT_QUEUED;
+                } else if (faces != null && faces.size() == 1) {
+                    result = saveImportedFace(faces.get(0), facultyDir, nextPhotoIndex) ? IMPORT_SAVED : IMPORT_SKIPPED;
                 }
-
-                updateProgressOnUI(progressDialog, counter, importedCount.get(), skippedCount.get());
+            } catch (Exception e) {
+                e.printStackTrace();
             }
-
-            // finished
-            mainHandler.post(() -> {
-                progressDialog.dismiss();
-                textStatus.setText("Imported: " + importedCount.get() + " | Skipped: " + skippedCount.get() + ". Press 'Update Dataset'.");
-                Toast.makeText(this, "Imported " + importedCount.get() + ". Skipped " + skippedCount.get(), Toast.LENGTH_LONG).show();
-                if (googleSignInClient != null) googleSignInClient.signOut();
-            });
-
-            exec.shutdown();
+            // A queued photo's hash is settled by the review
+            if (result != IMPORT_QUEUED) hashIndex.finish(claimed, result == IMPORT_SAVED);
+            done.accept(result);
         });
     }
 
-    // Shows a dialog with images and returns the chosen Bitmap (or null if user cancels).
-    private Bitmap promptUserToSelectFace(List<Bitmap> faces) {
-        final Object lock = new Object();
-        final Bitmap[] result = new Bitmap[1];
+    // Largest N among photo_N.jpg in the folder, 0 if none
+    private static int highestPhotoIndex(File facultyDir) {
+        int highest = 0;
+        File[] files = facultyDir.listFiles();
+        if (files == null) return 0;
+        for (File f : files) {
+            String name = f.getName();
+            if (!name.startsWith("photo_") || !name.endsWith(".jpg")) continue;
+            try {
+                highest = Math.max(highest, Integer.parseInt(name.substring(6, name.length() - 4)));
+            } catch (NumberFormatException ignored) { }
+        }
+        return highest;
+    }
 
-        mainHandler.post(() -> {
-            AlertDialog.Builder b = new AlertDialog.Builder(AdminActivity.this);
-            b.setTitle("Select the correct face");
-
-            // create horizontal scroll of images
-            LinearLayout layout = new LinearLayout(AdminActivity.this);
-            layout.setOrientation(LinearLayout.HORIZONTAL);
-            layout.setPadding(16, 16, 16, 16);
-            for (int i = 0; i < faces.size(); i++) {
-                final int idx = i;
-                ImageView iv = new ImageView(AdminActivity.this);
-                iv.setImageDrawable(new BitmapDrawable(getResources(), faces.get(i)));
-                LinearLayout.LayoutParams p = new LinearLayout.LayoutParams(300, 300);
-                p.setMargins(12, 0, 12, 0);
-                iv.setLayoutParams(p);
-                iv.setScaleType(ImageView.ScaleType.CENTER_CROP);
-                iv.setOnClickListener(v -> {
-                    synchronized (lock) {
-                        result[0] = faces.get(idx);
-                        lock.notify();
-                    }
-                });
-                layout.addView(iv);
+    // blur check -> resize -> save. Releases face.
+    private boolean saveImportedFace(Bitmap face, File facultyDir, AtomicInteger nextPhotoIndex) {
+        // blur detection
+        if (ImageProcessing.isBlurry(face)) {
+            // skip blurry
+            BitmapPool.release(face);
+            return false;
+        }
+
+        // resize to FaceNet expected size
+        Bitmap resized = ImageProcessing.resize(face, 160, 160);
+
+        // Save file
+        try {
+            File outFile = new File(facultyDir, "photo_" + nextPhotoIndex.incrementAndGet() + ".jpg");
+            try (FileOutputStream fos = new FileOutputStream(outFile)) {
+                resized.compress(Bitmap.CompressFormat.JPEG, 100, fos);
             }
+            return true;
+        } catch (Exception e) {
+            e.printStackTrace();
+            return false;
+        } finally {
+            if (resized != face) BitmapPool.release(resized);
+            BitmapPool.release(face);
+        }
+    }
 
-            b.setView(layout);
-            b.setNegativeButton("Skip", (d, w) -> {
-                synchronized (lock) {
-                    result[0] = null;
-                    lock.notify();
+    // Shows queued multi-face photos one after another; the chosen face is saved off the UI thread
+    private void reviewNextQueuedPhoto(ConcurrentLinkedQueue<QueuedPhoto> queue, int total, File facultyDir, AtomicInteger nextPhotoIndex,
+                                       PhotoHashIndex hashIndex, AtomicInteger importedCount, AtomicInteger skippedCount) {
+        QueuedPhoto queued = queue.poll();
+        if (queued == null) {
+            // finished
+            textStatus.setText("Imported: " + importedCount.get() + " | Skipped: " + skippedCount.get() + ". Press 'Update Dataset'.");
+            Toast.makeText(this, "Imported " + importedCount.get() + ". Skipped " + skippedCount.get(), Toast.LENGTH_LONG).show();
+            if (googleSignInClient != null) googleSignInClient.signOut();
+            return;
+        }
+        List<Bitmap> faces = queued.faces;
+
+        AlertDialog.Builder b = new AlertDialog.Builder(AdminActivity.this);
+        b.setTitle("Select the correct face (" + (total - queue.size()) + "/" + total + ")");
+
+        // create horizontal scroll of images
+        LinearLayout layout = new LinearLayout(AdminActivity.this);
+        layout.setOrientation(LinearLayout.HORIZONTAL);
+        layout.setPadding(16, 16, 16, 16);
+
+        AlertDialog[] dialogRef = new AlertDialog[1];
+        for (int i = 0; i < faces.size(); i++) {
+            final int idx = i;
+            ImageView iv = new ImageView(AdminActivity.this);
+            iv.setImageDrawable(new BitmapDrawable(getResources(), faces.get(i)));
+            LinearLayout.LayoutParams p = new LinearLayout.LayoutParams(300, 300);
+            p.setMargins(12, 0, 12, 0);
+            iv.setLayoutParams(p);
+            iv.setScaleType(ImageView.ScaleType.CENTER_CROP);
+            iv.setOnClickListener(v -> {
+                dialogRef[0].dismiss();
+                Bitmap chosen = faces.get(idx);
+                for (Bitmap other : faces) {
+                    if (other != chosen) BitmapPool.release(other);
                 }
+                cameraExecutor.execute(() -> {
+                    boolean saved = saveImportedFace(chosen, facultyDir, nextPhotoIndex);
+                    hashIndex.finish(queued.hash, saved);
+                    if (saved) importedCount.incrementAndGet();
+                    else skippedCount.incrementAndGet();
+                    mainHandler.post(() -> reviewNextQueuedPhoto(queue, total, facultyDir, nextPhotoIndex, hashIndex, importedCount, skippedCount));
+                });
             });
+            layout.addView(iv);
+        }
 
-            AlertDialog dialog = b.create();
-            dialog.setCancelable(false);
-            dialog.show();
+        b.setView(layout);
+        b.setNegativeButton("Skip", (d, w) -> {
+            for (Bitmap face : faces) BitmapPool.release(face);
+            hashIndex.finish(queued.hash, false);
+            skippedCount.incrementAndGet();
+            reviewNextQueuedPhoto(queue, total, facultyDir, nextPhotoIndex, hashIndex, importedCount, skippedCount);
         });
 
-        // wait for user selection
-        try {
-            synchronized (lock) {
-                lock.wait(); // will be notified when user picks or skips
-            }
-        } catch (InterruptedException e) {
-            return null;
-        }
-
-        return result[0];
+        AlertDialog dialog = b.create();
+        dialogRef[0] = dialog;
+        dialog.setCancelable(false);
+        dialog.show();
     }
 
+    // Used when ML Kit finds nothing
     private List<Bitmap> detectFacesFallback(Bitmap original) {
-        try {
-            // Try to call detectFaces if FaceAligner supports it
-            List<Bitmap> faces = faceAligner.detectFaces(original); // OPTIONAL method in your FaceAligner
-            if (faces != null && faces.size() > 0) return faces;
-        } catch (Exception ignored) { }
-
         // fallback: try to use android.media.FaceDetector (very simple; prefers RGB_565)
         try {
             Bitmap rgb = original.copy(Bitmap.Config.RGB_565, true);
@@ -723,43 +826,78 @@ public class AdminActivity extends BaseDrawerActivity {
                 }
 
                 Map<String, List<float[]>> allEmbeddings = new HashMap<>();
+                int totalSamples = 0, removedSamples = 0;
 
-                for (File facultyDir : facultyDirs) {
-                    String facultyName = facultyDir.getName();
-                    File[] photos = facultyDir.listFiles((dir, name) -> name.endsWith(".jpg"));
-                    if (photos == null || photos.length == 0) continue;
-
-                    List<float[]> embeddingsList = new ArrayList<>();
-
-                    for (File photo : photos) {
-                        Bitmap original = BitmapFactory.decodeFile(photo.getAbsolutePath());
-                        if (original == null) continue;
-
-                        // --- 1. CROP IMAGE FIRST ---
-                        Bitmap croppedFace = faceAligner.alignFace(original);
-
-                        if (croppedFace == null) {
-                            Log.w("Embedding", "No face found in: " + photo.getName());
-                            continue;
-                        }
-
-                        // --- 2. SAVE CROPPED FACE BACK TO SAME FILE ---
-                        try (FileOutputStream out = new FileOutputStream(photo)) {
-                            croppedFace.compress(Bitmap.CompressFormat.JPEG, 100, out);
+                // This thread only decodes; detection runs in ML Kit and crop saving + FaceNet run on
+                // one embedding thread, so decode, detect and inference of different photos overlap.
+                ExecutorService embedExecutor = Executors.newSingleThreadExecutor();
+                Semaphore inFlight = new Semaphore(EMBED_IN_FLIGHT);
+                try {
+                    for (File facultyDir : facultyDirs) {
+                        String facultyName = facultyDir.getName();
+                        File[] photos = facultyDir.listFiles((dir, name) -> name.endsWith(".jpg"));
+                        if (photos == null || photos.length == 0) continue;
+
+                        // Indexed by photo so the list keeps file order whatever finishes first
+                        float[][] results = new float[photos.length][];
+                        CountDownLatch remaining = new CountDownLatch(photos.length);
+
+                        for (int p = 0; p < photos.length; p++) {
+                            final File photo = photos[p];
+                            final int slot = p;
+                            inFlight.acquire();
+                            Bitmap original = BitmapFactory.decodeFile(photo.getAbsolutePath());
+                            if (original == null) {
+                                inFlight.release();
+                                remaining.countDown();
+                                continue;
+                            }
+
+                            // --- 1. CROP IMAGE FIRST ---
+                            faceAligner.alignFaceAsync(original).addOnCompleteListener(embedExecutor, task -> {
+                                original.recycle();
+                                Bitmap croppedFace = task.isSuccessful() ? task.getResult() : null;
+                                try {
+                                    if (croppedFace == null) {
+                                        Log.w("Embedding", "No face found in: " + photo.getName());
+                                        return;
+                                    }
+
+                                    // --- 2. SAVE CROPPED FACE BACK TO SAME FILE ---
+                                    try (FileOutputStream out = new FileOutputStream(photo)) {
+                                        croppedFace.compress(Bitmap.CompressFormat.JPEG, 100, out);
+                                    }
+
+                                    // --- 3. EMBEDDING FROM CROPPED FACE ---
+                                    results[slot] = faceNet.getEmbedding(croppedFace);
+                                } catch (Exception e) {
+                                    e.printStackTrace();
+                                } finally {
+                                    BitmapPool.release(croppedFace);
+                                    inFlight.release();
+                                    remaining.countDown();
+                                }
+                            });
                         }
 
-                        // --- 3. EMBEDDING FROM CROPPED FACE ---
-                        float[] emb = faceNet.getEmbedding(croppedFace);
-                        if (emb != null) {
-                            embeddingsList.add(emb);
+                        remaining.await();
+                        List<float[]> embeddingsList = new ArrayList<>();
+                        for (float[] emb : results) {
+                            if (emb != null) embeddingsList.add(emb);
                         }
+                        // Keep a bounded set of representatives per person
+                        GalleryPruner.Result pruned = GalleryPruner.prune(embeddingsList, MAX_SAMPLES_PER_FACULTY);
+                        Log.d("Embedding", facultyName + ": " + pruned);
+                        totalSamples += pruned.input;
+                        removedSamples += pruned.removed();
+                        allEmbeddings.put(facultyName, pruned.kept);
                     }
-
-                    allEmbeddings.put(facultyName, embeddingsList);
+                } finally {
+                    embedExecutor.shutdown();
                 }
 
                 // --- ADD MULTIPLE UNKNOWN EMBEDDINGS ---
-                int embeddingSize = 128; // same as FaceNet output size
+                int embeddingSize = faceNet.getSpec().embeddingSize; // same as the model's output size
                 int unknownCount = 10;    // number of unknown embeddings
                 Random random = new Random(42); // fixed seed for reproducibility
                 List<float[]> unknownEmbeddings = new ArrayList<>();
@@ -783,15 +921,14 @@ public class AdminActivity extends BaseDrawerActivity {
 
 
 
-                // Save embeddings.json
-                File embeddingsFile = new File(facultyRoot, "embeddings.json");
-                Gson gson = new Gson();
-                try (FileWriter writer = new FileWriter(embeddingsFile)) {
-                    gson.toJson(allEmbeddings, writer);
-                }
+                // Save embeddings.json (atomic replace, clears any pending deletes) and record the model
+                galleryStore.writeAll(allEmbeddings, faceNet.getSpec());
+                GalleryRepository.notifyGalleryChanged();
 
+                final String pruneReport = "Removed " + removedSamples + " of " + totalSamples
+                        + " samples (outliers, duplicates, redundant poses).";
                 runOnUiThread(() -> {
-                    textStatus.setText("Embeddings generated for all faculty!");
+                    textStatus.setText("Embeddings generated for all faculty!\n" + pruneReport);
                     Toast.makeText(AdminActivity.this, "Embeddings generation complete!", Toast.LENGTH_SHORT).show();
                 });
 
@@ -810,5 +947,18 @@ public class AdminActivity extends BaseDrawerActivity {
         super.onDestroy();
         if (cameraExecutor != null) cameraExecutor.shutdown();
         if (faceNet != null) faceNet.close();
+        if (enrollmentDetector != null) enrollmentDetector.close();
+        enrollmentSelector.clear();
+    }
+
+    // A multi-face photo waiting for the admin to pick a face, with its claimed hash (may be null)
+    private static class QueuedPhoto {
+        final List<Bitmap> faces;
+        final Long hash;
+
+        QueuedPhoto(List<Bitmap> faces, Long hash) {
+            this.faces = faces;
+            this.hash = hash;
+        }
     }
 }
@@ -0,0 +1,91 @@
+package com.sd.facultyfacialrecognition;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.util.Size;
+
+import androidx.camera.core.ImageAnalysis;
+import androidx.camera.core.resolutionselector.ResolutionSelector;
+import androidx.camera.core.resolutionselector.ResolutionStrategy;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Analysis stream resolution and output format for the live camera. The tuned value is stored
+ * per device, so it is only measured once (see {@link AnalysisTuner}).
+ */
+public class AnalysisSettings {
+    private static final String PREFS = "analysis_settings";
+    private static final String KEY_WIDTH = "target_width";
+    private static final String KEY_HEIGHT = "target_height";
+    private static final String KEY_RGBA = "rgba";
+
+    // Sensor (landscape) orientation, as CameraX expects target sizes
+    private static final Size[] CANDIDATE_SIZES = {
+            new Size(320, 240), new Size(640, 480), new Size(1280, 720)
+    };
+
+    public static final AnalysisSettings DEFAULT = new AnalysisSettings(640, 480, false);
+
+    public final int targetWidth;
+    public final int targetHeight;
+    /** RGBA_8888 output converted by CameraX, instead of YUV_420_888 converted by us. */
+    public final boolean rgba;
+
+    public AnalysisSettings(int targetWidth, int targetHeight, boolean rgba) {
+        this.targetWidth = targetWidth;
+        this.targetHeight = targetHeight;
+        this.rgba = rgba;
+    }
+
+    /** Every combination the tuner tries, smallest first. */
+    public static List<AnalysisSettings> candidates() {
+        List<AnalysisSettings> list = new ArrayList<>();
+        for (Size size : CANDIDATE_SIZES) {
+            list.add(new AnalysisSettings(size.getWidth(), size.getHeight(), false));
+            list.add(new AnalysisSettings(size.getWidth(), size.getHeight(), true));
+        }
+        return list;
+    }
+
+    /** The stored setting, or null if this device has not been tuned yet. */
+    public static AnalysisSettings load(Context context) {
+        SharedPreferences prefs = context.getSharedPreferences(PREFS, Context.MODE_PRIVATE);
+        if (!prefs.contains(KEY_WIDTH)) return null;
+        return new AnalysisSettings(prefs.getInt(KEY_WIDTH, DEFAULT.targetWidth),
+                prefs.getInt(KEY_HEIGHT, DEFAULT.targetHeight),
+                prefs.getBoolean(KEY_RGBA, DEFAULT.rgba));
+    }
+
+    public void save(Context context) {
+        context.getSharedPreferences(PREFS, Context.MODE_PRIVATE).edit()
+                .putInt(KEY_WIDTH, targetWidth)
+                .putInt(KEY_HEIGHT, targetHeight)
+                .putBoolean(KEY_RGBA, rgba)
+                .apply();
+    }
+
+    /** Forgets the stored setting so the next launch tunes again. */
+    public static void clear(Context context) {
+        context.getSharedPreferences(PREFS, Context.MODE_PRIVATE).edit().clear().apply();
+    }
+
+    public ImageAnalysis.Builder applyTo(ImageAnalysis.Builder builder) {
+        ResolutionSelector selector = new ResolutionSelector.Builder()
+                .setResolutionStrategy(new ResolutionStrategy(new Size(targetWidth, targetHeight),
+                        ResolutionStrategy.FALLBACK_RULE_CLOSEST_HIGHER_THEN_LOWER))
+                .build();
+        return builder
+                .setResolutionSelector(selector)
+                .setOutputImageFormat(rgba
+                        ? ImageAnalysis.OUTPUT_IMAGE_FORMAT_RGBA_8888
+                        : ImageAnalysis.OUTPUT_IMAGE_FORMAT_YUV_420_888);
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.US, "%dx%d %s", targetWidth, targetHeight, rgba ? "RGBA" : "YUV");
+    }
+}
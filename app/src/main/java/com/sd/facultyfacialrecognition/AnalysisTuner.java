@@ -0,0 +1,101 @@
+package com.sd.facultyfacialrecognition;
+
+import android.os.SystemClock;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * First-launch benchmark of the analysis settings.
+ *
+ * Each candidate is bound for a fixed window while recognition runs normally, and its processed
+ * frame rate is measured end to end (so CameraX's own RGBA conversion counts too). The winner is
+ * the fastest candidate whose frames still give a face of at least {@link #MIN_FACE_PX}. Face
+ * size is judged from faces actually seen during tuning, or a typical door-distance fraction
+ * when nobody stood in front of the camera.
+ */
+public class AnalysisTuner {
+    private static final String TAG = "AnalysisTuner";
+
+    private static final long WINDOW_MS = 2000;
+    // Frames right after a rebind include camera start-up; they are not counted
+    private static final int WARMUP_FRAMES = 5;
+    // Face width in analysis pixels below which crops get upscaled too much for FaceNet
+    public static final int MIN_FACE_PX = 80;
+    // Face width / frame short side assumed when no face was seen while tuning
+    private static final float DEFAULT_FACE_FRACTION = 0.25f;
+
+    private final List<AnalysisSettings> candidates = AnalysisSettings.candidates();
+    private final float[] fps = new float[candidates.size()];
+    private final int[] shortSides = new int[candidates.size()];
+    private final List<Float> faceFractions = new ArrayList<>();
+
+    private int index = 0;
+    private int frames = 0;
+    private long windowStart = 0;
+
+    public synchronized AnalysisSettings current() {
+        return candidates.get(index);
+    }
+
+    public synchronized boolean isDone() {
+        return index >= candidates.size();
+    }
+
+    /**
+     * Records one processed frame. Returns true when the current candidate's window is over;
+     * the caller then rebinds with {@link #current()} or, once {@link #isDone()}, with
+     * {@link #best()}.
+     */
+    public synchronized boolean onFrame(CascadeFaceDetector.Result result) {
+        if (isDone()) return false;
+
+        frames++;
+        if (frames == WARMUP_FRAMES) windowStart = SystemClock.elapsedRealtime();
+        if (frames <= WARMUP_FRAMES) return false;
+
+        int shortSide = Math.min(result.imageWidth, result.imageHeight);
+        shortSides[index] = shortSide;
+        for (DetectedFace face : result.faces) {
+            faceFractions.add(face.box.width() / (float) shortSide);
+        }
+
+        long elapsed = SystemClock.elapsedRealtime() - windowStart;
+        if (elapsed < WINDOW_MS) return false;
+
+        fps[index] = (frames - WARMUP_FRAMES) * 1000f / elapsed;
+        Log.i(TAG, String.format(Locale.US, "%s -> %dpx short side, %.1f fps",
+                candidates.get(index), shortSide, fps[index]));
+        index++;
+        frames = 0;
+        return true;
+    }
+
+    /** Fastest candidate meeting the face size; the largest frames if none does. */
+    public synchronized AnalysisSettings best() {
+        float fraction = DEFAULT_FACE_FRACTION;
+        if (!faceFractions.isEmpty()) {
+            List<Float> sorted = new ArrayList<>(faceFractions);
+            Collections.sort(sorted);
+            fraction = sorted.get(sorted.size() / 2);
+        }
+
+        int best = -1;
+        int largest = 0;
+        for (int i = 0; i < candidates.size(); i++) {
+            if (shortSides[i] > shortSides[largest]
+                    || (shortSides[i] == shortSides[largest] && fps[i] > fps[largest])) {
+                largest = i;
+            }
+            if (fraction * shortSides[i] < MIN_FACE_PX) continue;
+            if (best < 0 || fps[i] > fps[best]) best = i;
+        }
+
+        AnalysisSettings chosen = candidates.get(best >= 0 ? best : largest);
+        Log.i(TAG, String.format(Locale.US, "Chose %s (median face fraction %.2f)", chosen, fraction));
+        return chosen;
+    }
+}
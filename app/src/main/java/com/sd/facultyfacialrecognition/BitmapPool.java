@@ -0,0 +1,119 @@
+package com.sd.facultyfacialrecognition;
+
+import android.graphics.Bitmap;
+import android.util.Log;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Size-keyed pool of mutable bitmaps shared by the camera and enrollment paths.
+ *
+ * {@link #acquire} hands out a bitmap of exactly the requested size and config; its contents
+ * are undefined, so callers that don't overwrite every pixel must erase it first.
+ * {@link #release} gives it back once nothing references it any more. Steady-state recognition
+ * then cycles through the same few frame and face buffers instead of allocating native memory
+ * on every frame.
+ */
+public final class BitmapPool {
+    private static final String TAG = "BitmapPool";
+
+    private static final int MAX_PER_SIZE = 4;
+    private static final long MAX_POOL_BYTES = 32L * 1024 * 1024;
+
+    // Access order: iteration starts at the size class acquired or released least recently
+    private static final Map<Long, ArrayDeque<Bitmap>> pool = new LinkedHashMap<>(16, 0.75f, true);
+    private static long pooledBytes = 0;
+
+    private static int hits = 0;
+    private static int misses = 0;
+
+    private BitmapPool() {}
+
+    public static Bitmap acquire(int width, int height, Bitmap.Config config) {
+        long key = key(width, height, config);
+        synchronized (pool) {
+            ArrayDeque<Bitmap> free = pool.get(key);
+            while (free != null && !free.isEmpty()) {
+                Bitmap bmp = free.pop();
+                pooledBytes -= bmp.getAllocationByteCount();
+                if (!bmp.isRecycled()) {
+                    hits++;
+                    return bmp;
+                }
+            }
+            misses++;
+        }
+        return Bitmap.createBitmap(width, height, config);
+    }
+
+    public static Bitmap acquire(int width, int height) {
+        return acquire(width, height, Bitmap.Config.ARGB_8888);
+    }
+
+    /**
+     * Returns a bitmap to the pool. Only release bitmaps you own; null is ignored. Immutable
+     * bitmaps (decoded, cropped or shared ones the pool could never hand out) are left alone for
+     * the garbage collector rather than recycled under whoever else still holds them.
+     */
+    public static void release(Bitmap bmp) {
+        if (bmp == null || bmp.isRecycled()) return;
+        if (!bmp.isMutable() || bmp.getConfig() == null) return;
+
+        int bytes = bmp.getAllocationByteCount();
+        long key = key(bmp.getWidth(), bmp.getHeight(), bmp.getConfig());
+        synchronized (pool) {
+            ArrayDeque<Bitmap> free = pool.get(key);
+            if (free == null) {
+                free = new ArrayDeque<>();
+                pool.put(key, free);
+            }
+            for (Bitmap b : free) {
+                if (b == bmp) return; // double release
+            }
+            if (free.size() >= MAX_PER_SIZE || bytes > MAX_POOL_BYTES) {
+                bmp.recycle();
+                return;
+            }
+            free.push(bmp);
+            pooledBytes += bytes;
+            trimToBudget();
+        }
+    }
+
+    public static void clear() {
+        synchronized (pool) {
+            for (ArrayDeque<Bitmap> free : pool.values()) {
+                for (Bitmap b : free) b.recycle();
+            }
+            pool.clear();
+            pooledBytes = 0;
+        }
+    }
+
+    public static void logStats() {
+        synchronized (pool) {
+            Log.d(TAG, "hits=" + hits + " misses=" + misses + " pooledBytes=" + pooledBytes);
+        }
+    }
+
+    // Drops whole size classes, least recently used first, until the pool fits its byte budget again
+    private static void trimToBudget() {
+        Iterator<Map.Entry<Long, ArrayDeque<Bitmap>>> it = pool.entrySet().iterator();
+        while (pooledBytes > MAX_POOL_BYTES && it.hasNext()) {
+            ArrayDeque<Bitmap> free = it.next().getValue();
+            while (!free.isEmpty() && pooledBytes > MAX_POOL_BYTES) {
+                Bitmap b = free.removeLast();
+                pooledBytes -= b.getAllocationByteCount();
+                b.recycle();
+            }
+            if (free.isEmpty()) it.remove();
+        }
+    }
+
+    private static long key(int width, int height, Bitmap.Config config) {
+        return ((long) width << 32) | ((long) (height & 0xFFFFFF) << 8) | config.ordinal();
+    }
+}
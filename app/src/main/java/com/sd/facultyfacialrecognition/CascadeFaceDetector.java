@@ -0,0 +1,404 @@
+package com.sd.facultyfacialrecognition;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.PixelFormat;
+import android.graphics.PointF;
+import android.graphics.Rect;
+import android.media.Image;
+import android.util.Log;
+
+import com.google.android.gms.tasks.Task;
+import com.google.android.gms.tasks.Tasks;
+import com.google.mlkit.vision.common.InputImage;
+import com.google.mlkit.vision.face.Face;
+import com.google.mlkit.vision.face.FaceDetection;
+import com.google.mlkit.vision.face.FaceDetector;
+import com.google.mlkit.vision.face.FaceDetectorOptions;
+import com.google.mlkit.vision.face.FaceLandmark;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Executor;
+
+/**
+ * Two-tier live face detection.
+ *
+ * A FAST, landmark-free detector with tracking runs on every frame, on a downscaled grey copy of
+ * the frame's luma. When it finds exactly one face, the frame is converted to RGB and the
+ * ACCURATE landmark detector runs on a small square crop around that face. Frames with no face
+ * never pay for RGB conversion, and frames with several faces only do in multi-face mode
+ * ({@link #setMultiFace}), where each of the first {@link #MAX_REFINED_FACES} gets its own crop.
+ *
+ * While one face is being followed, the gate looks only at the region {@link RoiTracker} predicts
+ * for it, downscaled to {@link #ROI_LONG_SIDE}; a miss falls back to the full frame in the same
+ * call. Boxes are always reported in upright full-frame coordinates.
+ */
+public class CascadeFaceDetector {
+    private static final String TAG = "CascadeFaceDetector";
+
+    // Long side of the luma copy the gate detector sees
+    private static final int GATE_LONG_SIDE = 320;
+    // Long side of the luma copy of a predicted face region
+    private static final int ROI_LONG_SIDE = 160;
+    private static final int MIN_ROI_SIDE = 48;
+    // Side of the square crop given to the landmark detector, and how far it extends past the box
+    private static final int REFINE_SIZE = 256;
+    private static final float REFINE_MARGIN = 0.35f;
+    // Faces per multi-face frame that get landmarks; recognition looks at no more than this
+    private static final int MAX_REFINED_FACES = 4;
+    private static final int STATS_INTERVAL = 100;
+
+    private final Context context;
+    private final Executor executor;
+    private final FaceDetector gateDetector;
+    private final FaceDetector roiDetector;
+    private final FaceDetector refineDetector;
+    private final Paint filterPaint = new Paint(Paint.FILTER_BITMAP_FLAG);
+
+    // Only touched by the frame in flight; the analyzer does not deliver the next one before close
+    private final LumaBuffer gateLuma = new LumaBuffer();
+    private final LumaBuffer roiLuma = new LumaBuffer();
+    private final RoiTracker roiTracker = new RoiTracker();
+
+    private int frames, refinedFrames, roiHits, roiMisses;
+    private volatile boolean multiFace = false;
+    private long gateNanos, refineNanos;
+
+    /** Continuations run on executor, which should be the analyzer's thread. */
+    public CascadeFaceDetector(Context context, Executor executor) {
+        this.context = context.getApplicationContext();
+        this.executor = executor;
+
+        gateDetector = FaceDetection.getClient(new FaceDetectorOptions.Builder()
+                .setPerformanceMode(FaceDetectorOptions.PERFORMANCE_MODE_FAST)
+                .setLandmarkMode(FaceDetectorOptions.LANDMARK_MODE_NONE)
+                .setClassificationMode(FaceDetectorOptions.CLASSIFICATION_MODE_NONE)
+                .enableTracking()
+                .build());
+
+        // Region passes see a different input size every frame; the tracker keeps the id instead
+        roiDetector = FaceDetection.getClient(new FaceDetectorOptions.Builder()
+                .setPerformanceMode(FaceDetectorOptions.PERFORMANCE_MODE_FAST)
+                .setLandmarkMode(FaceDetectorOptions.LANDMARK_MODE_NONE)
+                .setClassificationMode(FaceDetectorOptions.CLASSIFICATION_MODE_NONE)
+                .build());
+
+        refineDetector = FaceDetection.getClient(new FaceDetectorOptions.Builder()
+                .setPerformanceMode(FaceDetectorOptions.PERFORMANCE_MODE_ACCURATE)
+                .setLandmarkMode(FaceDetectorOptions.LANDMARK_MODE_ALL)
+                .setClassificationMode(FaceDetectorOptions.CLASSIFICATION_MODE_NONE)
+                .build());
+    }
+
+    /**
+     * Detects faces in a YUV_420_888 or RGBA_8888 camera frame. The image must stay open until the task
+     * completes. Always release the result.
+     */
+    public Task<Result> process(Image mediaImage, int rotationDegrees) {
+        final long start = System.nanoTime();
+        final long now = start / 1_000_000L;
+        boolean rgba = mediaImage.getFormat() == PixelFormat.RGBA_8888;
+        int sensorW = mediaImage.getWidth();
+        int sensorH = mediaImage.getHeight();
+        boolean swap = rotationDegrees % 180 != 0;
+
+        Rect roi = roiTracker.predict(now, swap ? sensorH : sensorW, swap ? sensorW : sensorH);
+        // A sliver clipped at the frame edge is no use; the face is leaving the frame
+        if (roi != null && Math.min(roi.width(), roi.height()) < MIN_ROI_SIDE) roi = null;
+        if (roi == null) return detectFullFrame(mediaImage, rotationDegrees, rgba, start, now);
+
+        // Small region around the predicted face; the cost follows the face size, not the sensor
+        Rect sensorRoi = toSensor(roi, rotationDegrees, sensorW, sensorH);
+        int step = Math.max(1, Math.max(sensorRoi.width(), sensorRoi.height()) / ROI_LONG_SIDE);
+        Rect covered = new Rect();
+        InputImage roiImage = downscaleLuma(mediaImage, sensorRoi, rotationDegrees, step, rgba, roiLuma, covered);
+        Rect uprightCovered = toUpright(covered, rotationDegrees, sensorW, sensorH);
+
+        return roiDetector.process(roiImage).continueWithTask(executor, roiTask -> {
+            List<Face> found = roiTask.isSuccessful() ? roiTask.getResult() : null;
+            if (found == null || found.size() != 1) {
+                // Lost it (or someone joined): search the whole frame
+                roiMisses++;
+                roiTracker.reset();
+                return detectFullFrame(mediaImage, rotationDegrees, rgba, start, now);
+            }
+            roiHits++;
+            Face f = found.get(0);
+            Rect box = toFrame(f.getBoundingBox(), step, uprightCovered);
+            Integer id = roiTracker.update(box, null, now, false);
+            return refine(mediaImage, rotationDegrees, rgba,
+                    new DetectedFace(box, null, null, id, f.getHeadEulerAngleY(), f.getHeadEulerAngleX()),
+                    start, System.nanoTime());
+        });
+    }
+
+    private Task<Result> detectFullFrame(Image mediaImage, int rotationDegrees, boolean rgba, long start, long now) {
+        int sensorW = mediaImage.getWidth();
+        int sensorH = mediaImage.getHeight();
+        int step = Math.max(1, Math.max(sensorW, sensorH) / GATE_LONG_SIDE);
+        Rect covered = new Rect();
+        InputImage gateImage = downscaleLuma(mediaImage, new Rect(0, 0, sensorW, sensorH), rotationDegrees, step,
+                rgba, gateLuma, covered);
+        Rect uprightCovered = toUpright(covered, rotationDegrees, sensorW, sensorH);
+
+        return gateDetector.process(gateImage).continueWithTask(executor, gateTask -> {
+            long gateDone = System.nanoTime();
+            if (!gateTask.isSuccessful()) {
+                // No faces this frame; nothing was allocated for it yet
+                Log.w(TAG, "Gate detection failed", gateTask.getException());
+                roiTracker.reset();
+                record(gateDone - start, 0);
+                return Tasks.forResult(new Result(sensorW, sensorH));
+            }
+            List<Face> gateFaces = gateTask.getResult();
+
+            if (gateFaces.size() != 1) {
+                roiTracker.reset();
+                Result result = new Result(sensorW, sensorH);
+                for (Face f : gateFaces) {
+                    result.faces.add(new DetectedFace(toFrame(f.getBoundingBox(), step, uprightCovered), null, null,
+                            f.getTrackingId(), f.getHeadEulerAngleY(), f.getHeadEulerAngleX()));
+                }
+                // Multi-face mode recognizes everyone, so it needs the pixels and landmarks too
+                if (multiFace && gateFaces.size() > 1) return refineAll(mediaImage, rotationDegrees, rgba, result, start, gateDone);
+                record(gateDone - start, 0);
+                return Tasks.forResult(result);
+            }
+
+            Face f = gateFaces.get(0);
+            Rect box = toFrame(f.getBoundingBox(), step, uprightCovered);
+            Integer id = roiTracker.update(box, f.getTrackingId(), now, true);
+            return refine(mediaImage, rotationDegrees, rgba,
+                    new DetectedFace(box, null, null, id, f.getHeadEulerAngleY(), f.getHeadEulerAngleX()),
+                    start, gateDone);
+        });
+    }
+
+    // One face found by the gate: RGB frame, then landmarks on a square crop around it
+    private Task<Result> refine(Image mediaImage, int rotationDegrees, boolean rgba, DetectedFace gateFace,
+                                long start, long gateDone) {
+        Result result = new Result(mediaImage.getWidth(), mediaImage.getHeight());
+        result.frame = toRgb(mediaImage, rotationDegrees, rgba);
+        if (result.frame == null) {
+            result.faces.add(gateFace);
+            record(gateDone - start, 0);
+            return Tasks.forResult(result);
+        }
+
+        return refineFace(result.frame, gateFace).continueWith(executor, refineTask -> {
+            result.faces.add(refineTask.isSuccessful() ? refineTask.getResult() : gateFace);
+            record(gateDone - start, System.nanoTime() - gateDone);
+            return result;
+        });
+    }
+
+    // Several faces in multi-face mode: RGB frame, then landmarks for the first MAX_REFINED_FACES,
+    // the ones recognition looks at. The rest keep their gate boxes.
+    private Task<Result> refineAll(Image mediaImage, int rotationDegrees, boolean rgba, Result result,
+                                   long start, long gateDone) {
+        result.frame = toRgb(mediaImage, rotationDegrees, rgba);
+        if (result.frame == null) {
+            record(gateDone - start, 0);
+            return Tasks.forResult(result);
+        }
+
+        int count = Math.min(result.faces.size(), MAX_REFINED_FACES);
+        List<Task<DetectedFace>> refines = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) refines.add(refineFace(result.frame, result.faces.get(i)));
+
+        return Tasks.whenAllComplete(refines).continueWith(executor, all -> {
+            for (int i = 0; i < count; i++) {
+                Task<DetectedFace> refineTask = refines.get(i);
+                if (refineTask.isSuccessful()) result.faces.set(i, refineTask.getResult());
+            }
+            record(gateDone - start, System.nanoTime() - gateDone);
+            return result;
+        });
+    }
+
+    // Landmark pass on a square crop of frame around gateFace. Falls back to gateFace, without eyes,
+    // when the pass loses it.
+    private Task<DetectedFace> refineFace(Bitmap frame, DetectedFace gateFace) {
+        // Square crop around the gate box, scaled into one pooled REFINE_SIZE bitmap
+        Rect gateBox = gateFace.box;
+        int side = Math.round(Math.max(gateBox.width(), gateBox.height()) * (1f + 2f * REFINE_MARGIN));
+        int cropLeft = gateBox.centerX() - side / 2;
+        int cropTop = gateBox.centerY() - side / 2;
+        float cropScale = side / (float) REFINE_SIZE;
+
+        Bitmap crop = BitmapPool.acquire(REFINE_SIZE, REFINE_SIZE);
+        crop.eraseColor(Color.BLACK);
+        new Canvas(crop).drawBitmap(frame,
+                new Rect(cropLeft, cropTop, cropLeft + side, cropTop + side),
+                new Rect(0, 0, REFINE_SIZE, REFINE_SIZE), filterPaint);
+
+        return refineDetector.process(InputImage.fromBitmap(crop, 0)).continueWith(executor, refineTask -> {
+            BitmapPool.release(crop);
+            Face refined = null;
+            if (refineTask.isSuccessful()) {
+                for (Face f : refineTask.getResult()) {
+                    if (refined == null || area(f.getBoundingBox()) > area(refined.getBoundingBox())) refined = f;
+                }
+            }
+            if (refined == null) return gateFace;
+
+            Rect b = refined.getBoundingBox();
+            Rect box = new Rect(
+                    cropLeft + Math.round(b.left * cropScale), cropTop + Math.round(b.top * cropScale),
+                    cropLeft + Math.round(b.right * cropScale), cropTop + Math.round(b.bottom * cropScale));
+            return new DetectedFace(box,
+                    mapLandmark(refined, FaceLandmark.LEFT_EYE, cropLeft, cropTop, cropScale),
+                    mapLandmark(refined, FaceLandmark.RIGHT_EYE, cropLeft, cropTop, cropScale),
+                    gateFace.trackingId, refined.getHeadEulerAngleY(), refined.getHeadEulerAngleX());
+        });
+    }
+
+    // Pooled upright RGB copy of the frame
+    private Bitmap toRgb(Image mediaImage, int rotationDegrees, boolean rgba) {
+        return rgba
+                ? InputImageUtils.getBitmapFromRgbaImage(mediaImage, rotationDegrees)
+                : InputImageUtils.getBitmapFromInputImage(context, InputImage.fromMediaImage(mediaImage, rotationDegrees));
+    }
+
+    // Every step-th luma sample of every step-th row of the sensor region; chroma is left neutral
+    // grey. For RGBA frames the luma is computed from the sampled pixels. covered is set to the
+    // sensor area the samples actually span.
+    private InputImage downscaleLuma(Image image, Rect region, int rotationDegrees, int step, boolean rgba,
+                                     LumaBuffer buf, Rect covered) {
+        // NV21 needs even dimensions
+        int w = Math.max(2, (region.width() / step) & ~1);
+        int h = Math.max(2, (region.height() / step) & ~1);
+        int ySize = w * h;
+        if (buf.nv21.length != ySize * 3 / 2) {
+            buf.nv21 = new byte[ySize * 3 / 2];
+            Arrays.fill(buf.nv21, ySize, buf.nv21.length, (byte) 128);
+        }
+
+        Image.Plane yPlane = image.getPlanes()[0];
+        ByteBuffer y = yPlane.getBuffer();
+        int rowStride = yPlane.getRowStride();
+        int pixelStride = yPlane.getPixelStride();
+        int rowBytes = (w - 1) * step * pixelStride + (rgba ? 4 : 1);
+        if (buf.row.length < rowBytes) buf.row = new byte[rowBytes];
+        byte[] nv21 = buf.nv21;
+        byte[] lumaRow = buf.row;
+
+        for (int row = 0; row < h; row++) {
+            y.position((region.top + row * step) * rowStride + region.left * pixelStride);
+            y.get(lumaRow, 0, rowBytes);
+            int out = row * w;
+            if (rgba) {
+                for (int col = 0; col < w; col++) {
+                    int i = col * step * pixelStride;
+                    nv21[out + col] = (byte) ((77 * (lumaRow[i] & 0xff) + 150 * (lumaRow[i + 1] & 0xff)
+                            + 29 * (lumaRow[i + 2] & 0xff)) >> 8);
+                }
+            } else {
+                for (int col = 0; col < w; col++) {
+                    nv21[out + col] = lumaRow[col * step * pixelStride];
+                }
+            }
+        }
+        y.rewind();
+
+        covered.set(region.left, region.top, region.left + w * step, region.top + h * step);
+        return InputImage.fromByteArray(nv21, w, h, rotationDegrees, InputImage.IMAGE_FORMAT_NV21);
+    }
+
+    // Box from a downscaled region image (upright) to upright full-frame coordinates
+    private static Rect toFrame(Rect r, int step, Rect uprightRegion) {
+        return new Rect(uprightRegion.left + r.left * step, uprightRegion.top + r.top * step,
+                uprightRegion.left + r.right * step, uprightRegion.top + r.bottom * step);
+    }
+
+    // Upright frame rect -> sensor buffer rect, for a sensor of w x h rotated by degrees to be upright
+    static Rect toSensor(Rect u, int degrees, int w, int h) {
+        switch (degrees) {
+            case 90: return new Rect(u.top, h - u.right, u.bottom, h - u.left);
+            case 180: return new Rect(w - u.right, h - u.bottom, w - u.left, h - u.top);
+            case 270: return new Rect(w - u.bottom, u.left, w - u.top, u.right);
+            default: return new Rect(u);
+        }
+    }
+
+    // Inverse of toSensor
+    static Rect toUpright(Rect s, int degrees, int w, int h) {
+        switch (degrees) {
+            case 90: return new Rect(h - s.bottom, s.left, h - s.top, s.right);
+            case 180: return new Rect(w - s.right, h - s.bottom, w - s.left, h - s.top);
+            case 270: return new Rect(s.top, w - s.right, s.bottom, w - s.left);
+            default: return new Rect(s);
+        }
+    }
+
+    private static int area(Rect r) {
+        return r.width() * r.height();
+    }
+
+    private static PointF mapLandmark(Face face, int type, int left, int top, float scale) {
+        FaceLandmark landmark = face.getLandmark(type);
+        if (landmark == null) return null;
+        PointF p = landmark.getPosition();
+        return new PointF(left + p.x * scale, top + p.y * scale);
+    }
+
+    private void record(long gate, long refine) {
+        frames++;
+        gateNanos += gate;
+        if (refine > 0) {
+            refinedFrames++;
+            refineNanos += refine;
+        }
+        if (frames % STATS_INTERVAL == 0) {
+            Log.d(TAG, String.format(Locale.US, "gate %.1f ms avg over %d frames, refine %.1f ms avg on %d frames, ROI %d hits / %d misses",
+                    gateNanos / 1e6 / frames, frames,
+                    refinedFrames > 0 ? refineNanos / 1e6 / refinedFrames : 0.0, refinedFrames, roiHits, roiMisses));
+        }
+    }
+
+    /** When on, frames with several faces also carry the RGB frame and landmarks so every face can be recognized. */
+    public void setMultiFace(boolean multiFace) {
+        this.multiFace = multiFace;
+    }
+
+    public void close() {
+        gateDetector.close();
+        roiDetector.close();
+        refineDetector.close();
+    }
+
+    private static class LumaBuffer {
+        byte[] nv21 = new byte[0];
+        byte[] row = new byte[0];
+    }
+
+    /**
+     * Faces in upright full-resolution coordinates, plus the RGB frame when one was needed: a
+     * single face, or several in multi-face mode.
+     */
+    public static class Result {
+        public final List<DetectedFace> faces = new ArrayList<>();
+        /** Sensor frame size, as InputImage reports it. */
+        public final int imageWidth;
+        public final int imageHeight;
+        /** Pooled upright RGB frame; only set when a face was refined or several were found in multi-face mode. */
+        public Bitmap frame;
+
+        Result(int imageWidth, int imageHeight) {
+            this.imageWidth = imageWidth;
+            this.imageHeight = imageHeight;
+        }
+
+        public void release() {
+            BitmapPool.release(frame);
+            frame = null;
+        }
+    }
+}
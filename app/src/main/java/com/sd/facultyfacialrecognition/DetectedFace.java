@@ -0,0 +1,26 @@
+package com.sd.facultyfacialrecognition;
+
+import android.graphics.PointF;
+import android.graphics.Rect;
+
+/**
+ * A face found in an upright camera frame, in full-resolution frame coordinates.
+ * Eyes are null when landmarks were not available for this face.
+ */
+public class DetectedFace {
+    public final Rect box;
+    public final PointF leftEye;
+    public final PointF rightEye;
+    public final Integer trackingId;
+    public final float yaw;
+    public final float pitch;
+
+    public DetectedFace(Rect box, PointF leftEye, PointF rightEye, Integer trackingId, float yaw, float pitch) {
+        this.box = box;
+        this.leftEye = leftEye;
+        this.rightEye = rightEye;
+        this.trackingId = trackingId;
+        this.yaw = yaw;
+        this.pitch = pitch;
+    }
+}
@@ -0,0 +1,66 @@
+package com.sd.facultyfacialrecognition;
+
+import android.graphics.Bitmap;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A face embedding model. Each model declares its input size, input normalization and output
+ * dimension through its {@link Spec}; galleries remember which spec produced them, so embeddings
+ * from different models are never compared.
+ */
+public interface EmbeddingModel {
+
+    /** The model used for enrollment and recognition. */
+    Spec ACTIVE = Spec.FACENET; // FACENET or MOBILE_FACENET
+
+    Spec getSpec();
+
+    /** L2-normalized embedding of a face crop of any size, or null on failure. */
+    float[] getEmbedding(Bitmap face);
+
+    /**
+     * Embeddings of several faces, in order; entries are null where a face failed. Models that
+     * can run a batch in one invocation override this.
+     */
+    default List<float[]> getEmbeddings(List<Bitmap> faces) {
+        List<float[]> out = new ArrayList<>(faces.size());
+        for (Bitmap face : faces) out.add(getEmbedding(face));
+        return out;
+    }
+
+    void close();
+
+    final class Spec {
+        public static final Spec FACENET = new Spec("facenet", "facenet.tflite", 160, 128, 127.5f, 127.5f);
+        public static final Spec MOBILE_FACENET = new Spec("mobilefacenet", "mobilefacenet.tflite", 112, 192, 127.5f, 128f);
+
+        public final String name;
+        /** Asset name, or an absolute file path. */
+        public final String modelPath;
+        public final int inputSize;
+        public final int embeddingSize;
+        // Each 0..255 channel value v is fed as (v - inputMean) / inputStd
+        public final float inputMean;
+        public final float inputStd;
+
+        public Spec(String name, String modelPath, int inputSize, int embeddingSize, float inputMean, float inputStd) {
+            this.name = name;
+            this.modelPath = modelPath;
+            this.inputSize = inputSize;
+            this.embeddingSize = embeddingSize;
+            this.inputMean = inputMean;
+            this.inputStd = inputStd;
+        }
+
+        public static Spec[] all() {
+            return new Spec[] {FACENET, MOBILE_FACENET};
+        }
+
+        @Override
+        public String toString() {
+            return name + " (" + inputSize + "x" + inputSize + " -> " + embeddingSize + "d)";
+        }
+    }
+}
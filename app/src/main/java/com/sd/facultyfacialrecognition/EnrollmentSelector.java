@@ -0,0 +1,118 @@
+package com.sd.facultyfacialrecognition;
+
+import android.graphics.Bitmap;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Keeps the best enrollment frames out of a burst of analysis frames.
+ *
+ * Candidates are bucketed by head pose (yaw/pitch bins) and only the sharpest face per bucket is
+ * kept, so memory stays bounded however long the burst runs. {@link #selectBest} then picks the
+ * highest scoring faces while spreading them over as many distinct poses as possible.
+ */
+public class EnrollmentSelector {
+
+    private static final float POSE_BIN_DEGREES = 8f;
+    private static final float MAX_YAW = 35f;
+    private static final float MAX_PITCH = 25f;
+
+    private final Map<Integer, Candidate> bestPerBin = new HashMap<>();
+    private int framesSeen = 0;
+
+    /**
+     * Offers one aligned face. Takes ownership of the bitmap: it is either kept or released
+     * to the pool. Returns true if it was kept.
+     */
+    public synchronized boolean offer(Bitmap face, float quality, float yaw, float pitch) {
+        framesSeen++;
+        if (Math.abs(yaw) > MAX_YAW || Math.abs(pitch) > MAX_PITCH) {
+            BitmapPool.release(face);
+            return false;
+        }
+
+        int bin = Math.round(yaw / POSE_BIN_DEGREES) * 100 + Math.round(pitch / POSE_BIN_DEGREES);
+        Candidate current = bestPerBin.get(bin);
+        if (current != null && current.quality >= quality) {
+            BitmapPool.release(face);
+            return false;
+        }
+        if (current != null) BitmapPool.release(current.face);
+        bestPerBin.put(bin, new Candidate(face, quality, yaw, pitch));
+        return true;
+    }
+
+    public synchronized int distinctPoses() {
+        return bestPerBin.size();
+    }
+
+    public synchronized int framesSeen() {
+        return framesSeen;
+    }
+
+    /**
+     * Up to n faces, best first, preferring ones whose pose differs from what is already picked.
+     * Ownership of the returned bitmaps passes to the caller; everything else is released.
+     */
+    public synchronized List<Bitmap> selectBest(int n) {
+        List<Candidate> all = new ArrayList<>(bestPerBin.values());
+        all.sort((a, b) -> Float.compare(b.quality, a.quality));
+
+        List<Candidate> picked = new ArrayList<>();
+        // Greedy farthest-pose pass, then top up with the best remaining faces
+        while (picked.size() < n && !all.isEmpty()) {
+            Candidate next = null;
+            float bestGain = -1f;
+            for (Candidate c : all) {
+                float gain = c.quality * (1f + minPoseDistance(c, picked) / POSE_BIN_DEGREES);
+                if (gain > bestGain) {
+                    bestGain = gain;
+                    next = c;
+                }
+            }
+            all.remove(next);
+            picked.add(next);
+        }
+
+        for (Candidate c : all) BitmapPool.release(c.face);
+        bestPerBin.clear();
+
+        List<Bitmap> out = new ArrayList<>();
+        for (Candidate c : picked) out.add(c.face);
+        return out;
+    }
+
+    public synchronized void clear() {
+        for (Candidate c : bestPerBin.values()) BitmapPool.release(c.face);
+        bestPerBin.clear();
+        framesSeen = 0;
+    }
+
+    private static float minPoseDistance(Candidate c, List<Candidate> picked) {
+        if (picked.isEmpty()) return 0f;
+        float min = Float.MAX_VALUE;
+        for (Candidate p : picked) {
+            float dy = c.yaw - p.yaw;
+            float dp = c.pitch - p.pitch;
+            min = Math.min(min, (float) Math.sqrt(dy * dy + dp * dp));
+        }
+        return min;
+    }
+
+    private static class Candidate {
+        final Bitmap face;
+        final float quality;
+        final float yaw;
+        final float pitch;
+
+        Candidate(Bitmap face, float quality, float yaw, float pitch) {
+            this.face = face;
+            this.quality = quality;
+            this.yaw = yaw;
+            this.pitch = pitch;
+        }
+    }
+}
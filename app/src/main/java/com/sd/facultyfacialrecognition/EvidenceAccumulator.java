@@ -0,0 +1,210 @@
+package com.sd.facultyfacialrecognition;
+
+import android.util.Log;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Streaming evidence for "who is in front of the camera", replacing the old
+ * N-identical-frames counter.
+ *
+ * Every frame contributes a log-likelihood ratio per identity. Only the frame's leader can gain
+ * evidence, and only by as much as both its distance (genuine vs impostor distance model) and its
+ * margin over the runner-up (clear winner vs lookalike margin model) support; a leader that
+ * barely beats a lookalike gains nothing, so two similar faculty can't both climb to the bound.
+ * Every other identity can only lose evidence. Evidence decays exponentially so old frames fade,
+ * and a decision is made once the leader crosses the Wald SPRT bound ln((1 - beta) / alpha). A
+ * single noisy frame only costs a little evidence instead of resetting everything.
+ *
+ * In verification mode there is a single candidate identity and no runner-up, so only the
+ * distance model applies, with looser error rates (and therefore fewer frames).
+ *
+ * The model constants are the leave-one-out statistics {@link MatcherBenchmark} logs for an
+ * enrolled FaceNet gallery (genuine vs nearest-impostor centroid distance, and the
+ * impostor-minus-genuine margin); re-run it on site and copy its numbers in when they differ.
+ */
+public class EvidenceAccumulator {
+    private static final String TAG = "EvidenceAccumulator";
+
+    // Distance models for L2-normalized FaceNet embeddings (MatcherBenchmark "distance" line)
+    private static final float GENUINE_MEAN = 0.70f;
+    private static final float IMPOSTOR_MEAN = 1.20f;
+    private static final float SIGMA = 0.20f;
+    // Leader-to-runner-up margin when the leader is right (MatcherBenchmark "margin" line) vs a
+    // lookalike, where the wrong leader is only marginally ahead of the true identity
+    private static final float CLEAR_MARGIN_MEAN = 0.40f;
+    private static final float LOOKALIKE_MARGIN_MEAN = 0.05f;
+    private static final float MARGIN_SIGMA = 0.15f;
+
+    // Frames are correlated, so one frame may never carry more than this much evidence.
+    // Together with the upper bound this also sets the minimum number of frames to decide.
+    private static final float MAX_FRAME_LLR = 2.0f;
+    private static final float DECAY = 0.9f;
+    private static final int LATENCY_HISTORY = 50;
+    private static final float VERIFY_ALPHA = 0.01f;
+    private static final float VERIFY_BETA = 0.05f;
+
+    private final float identifyUpperBound;
+    private final float identifyLowerBound;
+    private final float verifyUpperBound;
+    private final float verifyLowerBound;
+    private float upperBound;
+    private float lowerBound;
+    private boolean verifying = false;
+
+    private final Map<String, Float> evidence = new HashMap<>();
+    private Integer trackId = null;
+    private String leader = "Scanning...";
+    private String decided = null;
+    private long firstEvidenceMillis = 0;
+
+    private final long[] latencies = new long[LATENCY_HISTORY];
+    private int latencyCount = 0;
+
+    /** alpha bounds the false-accept rate, beta the false-reject rate. */
+    public EvidenceAccumulator(float alpha, float beta) {
+        identifyUpperBound = (float) Math.log((1 - beta) / alpha);
+        identifyLowerBound = (float) Math.log(beta / (1 - alpha));
+        verifyUpperBound = (float) Math.log((1 - VERIFY_BETA) / VERIFY_ALPHA);
+        verifyLowerBound = (float) Math.log(VERIFY_BETA / (1 - VERIFY_ALPHA));
+        upperBound = identifyUpperBound;
+        lowerBound = identifyLowerBound;
+    }
+
+    public EvidenceAccumulator() {
+        this(0.001f, 0.01f);
+    }
+
+    /** Switches between 1:N identification and 1:1 verification; evidence restarts on a switch. */
+    public synchronized void setVerifying(boolean verifying) {
+        if (this.verifying == verifying) return;
+        this.verifying = verifying;
+        upperBound = verifying ? verifyUpperBound : identifyUpperBound;
+        lowerBound = verifying ? verifyLowerBound : identifyLowerBound;
+        reset();
+    }
+
+    public synchronized boolean isVerifying() {
+        return verifying;
+    }
+
+    public synchronized void reset() {
+        evidence.clear();
+        trackId = null;
+        leader = "Scanning...";
+        decided = null;
+        firstEvidenceMillis = 0;
+    }
+
+    /**
+     * Feeds one frame. ranking may be null when no usable face was seen; evidence then
+     * only decays. A different tracking id means a different person, so evidence restarts.
+     */
+    public synchronized void update(Integer frameTrackId, List<FaceMatcher.Match> ranking, long nowMillis) {
+        if (frameTrackId != null && trackId != null && !frameTrackId.equals(trackId)) {
+            reset();
+        }
+        if (frameTrackId != null) trackId = frameTrackId;
+
+        // Decay first so identities missing from this frame's ranking lose ground
+        Iterator<Map.Entry<String, Float>> it = evidence.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<String, Float> e = it.next();
+            float v = e.getValue() * DECAY;
+            if (Math.abs(v) < 0.01f) it.remove();
+            else e.setValue(v);
+        }
+
+        if (ranking != null) {
+            for (int i = 0; i < ranking.size(); i++) {
+                FaceMatcher.Match m = ranking.get(i);
+                float llr = frameLlr(m.distance);
+                if (i > 0) {
+                    // Not this frame's leader: may lose evidence, never gain
+                    llr = Math.min(0f, llr);
+                } else if (ranking.size() > 1) {
+                    // The leader gains only as much as its lead over the runner-up supports
+                    llr = Math.min(llr, marginLlr(ranking.get(1).distance - m.distance));
+                }
+                float current = evidence.containsKey(m.name) ? evidence.get(m.name) : 0f;
+                evidence.put(m.name, Math.max(lowerBound, current + llr));
+            }
+            if (firstEvidenceMillis == 0 && !ranking.isEmpty()) firstEvidenceMillis = nowMillis;
+        }
+
+        String best = null;
+        float bestValue = 0f;
+        for (Map.Entry<String, Float> e : evidence.entrySet()) {
+            if (e.getValue() > bestValue) {
+                best = e.getKey();
+                bestValue = e.getValue();
+            }
+        }
+        leader = best != null ? best : "Scanning...";
+
+        if (decided == null && best != null && bestValue >= upperBound) {
+            decided = best;
+            recordLatency(nowMillis - firstEvidenceMillis);
+        } else if (decided != null && !decided.equals(leader)) {
+            decided = null;
+        }
+    }
+
+    private float frameLlr(float distance) {
+        float g = distance - GENUINE_MEAN;
+        float i = distance - IMPOSTOR_MEAN;
+        float llr = (i * i - g * g) / (2f * SIGMA * SIGMA);
+        return Math.max(-MAX_FRAME_LLR, Math.min(MAX_FRAME_LLR, llr));
+    }
+
+    private float marginLlr(float margin) {
+        float c = margin - CLEAR_MARGIN_MEAN;
+        float l = margin - LOOKALIKE_MARGIN_MEAN;
+        float llr = (l * l - c * c) / (2f * MARGIN_SIGMA * MARGIN_SIGMA);
+        return Math.max(-MAX_FRAME_LLR, Math.min(MAX_FRAME_LLR, llr));
+    }
+
+    private void recordLatency(long millis) {
+        latencies[latencyCount % LATENCY_HISTORY] = millis;
+        latencyCount++;
+        Log.d(TAG, String.format(Locale.US, "Decided %s in %d ms (median %d ms over %d decisions)",
+                decided, millis, getMedianTimeToDecisionMillis(), Math.min(latencyCount, LATENCY_HISTORY)));
+    }
+
+    public synchronized boolean isDecided() {
+        return decided != null;
+    }
+
+    /** The identity the evidence settled on, or "Scanning..." when undecided. */
+    public synchronized String getDecision() {
+        return decided != null ? decided : "Scanning...";
+    }
+
+    public synchronized String getLeader() {
+        return leader;
+    }
+
+    public synchronized boolean hasEvidence() {
+        return !"Scanning...".equals(leader);
+    }
+
+    /** 0..1 progress of the leader towards the decision bound, for the UI. */
+    public synchronized float getProgress() {
+        Float v = evidence.get(leader);
+        if (v == null || v <= 0) return 0f;
+        return Math.min(1f, v / upperBound);
+    }
+
+    public synchronized long getMedianTimeToDecisionMillis() {
+        int n = Math.min(latencyCount, LATENCY_HISTORY);
+        if (n == 0) return 0;
+        long[] copy = Arrays.copyOf(latencies, n);
+        Arrays.sort(copy);
+        return copy[n / 2];
+    }
+}
@@ -2,12 +2,14 @@ package com.sd.facultyfacialrecognition;
 
 import android.content.Context;
 import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Paint;
 import android.graphics.Rect;
 import android.util.Log;
 
 import androidx.annotation.NonNull;
 
-import com.google.android.gms.tasks.Tasks;
+import com.google.android.gms.tasks.Task;
 import com.google.mlkit.vision.common.InputImage;
 import com.google.mlkit.vision.face.Face;
 import com.google.mlkit.vision.face.FaceDetection;
@@ -16,91 +18,114 @@ import com.google.mlkit.vision.face.FaceDetectorOptions;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.Executor;
 
 /**
  * FaceAligner detects a face in a bitmap, crops it, and resizes it to 160x160 for FaceNet.
+ *
+ * The *Async methods return ML Kit Tasks instead of blocking, so callers can keep several
+ * detections in flight while they decode or run inference. Detection can run on a downscaled
+ * copy; boxes are mapped back and crops are always taken from the full-resolution bitmap.
  */
 public class FaceAligner {
 
+    private static final int FACE_SIZE = 160;
+    // Long side of the copy handed to the detector; 0 disables downscaling
+    public static final int DEFAULT_DETECT_DIMENSION = 640;
+
+    // Continuations are tiny (box mapping and one draw), run them on the detector's thread
+    private static final Executor DIRECT = Runnable::run;
+
     private final FaceDetector detector;
+    private final Rect faceRect = new Rect(0, 0, FACE_SIZE, FACE_SIZE);
+    private final Paint filterPaint = new Paint(Paint.FILTER_BITMAP_FLAG);
 
     public FaceAligner(@NonNull Context context) {
         // High-speed face detection
-        FaceDetectorOptions options = new FaceDetectorOptions.Builder()
+        this(context, new FaceDetectorOptions.Builder()
                 .setPerformanceMode(FaceDetectorOptions.PERFORMANCE_MODE_FAST)
                 .setLandmarkMode(FaceDetectorOptions.LANDMARK_MODE_NONE)
                 .setClassificationMode(FaceDetectorOptions.CLASSIFICATION_MODE_NONE)
-                .build();
+                .build());
+    }
 
+    /** Lets each use pick its own detector trade-off (e.g. ACCURATE for final enrollment). */
+    public FaceAligner(@NonNull Context context, @NonNull FaceDetectorOptions options) {
         detector = FaceDetection.getClient(options);
     }
 
     /**
-     * Detects the first face in the bitmap, crops it, and resizes to 160x160.
-     * Returns null if no face is found.
+     * Face boxes in full-resolution coordinates. Detection runs on a copy whose long side is at
+     * most maxDetectDimension (0 = full size).
      */
-    public Bitmap alignFace(Bitmap bitmap) {
-        try {
-            InputImage image = InputImage.fromBitmap(bitmap, 0);
+    public Task<List<Rect>> detectBoxesAsync(Bitmap bitmap, int maxDetectDimension) {
+        int longSide = Math.max(bitmap.getWidth(), bitmap.getHeight());
+        float scale = maxDetectDimension > 0 && longSide > maxDetectDimension
+                ? maxDetectDimension / (float) longSide : 1f;
+
+        Bitmap input = bitmap;
+        if (scale < 1f) {
+            input = BitmapPool.acquire(Math.max(1, Math.round(bitmap.getWidth() * scale)),
+                    Math.max(1, Math.round(bitmap.getHeight() * scale)));
+            new Canvas(input).drawBitmap(bitmap, null,
+                    new Rect(0, 0, input.getWidth(), input.getHeight()), filterPaint);
+        }
+
+        final Bitmap detectInput = input;
+        final float inverse = 1f / scale;
+        return detector.process(InputImage.fromBitmap(detectInput, 0))
+                .continueWith(DIRECT, task -> {
+                    if (detectInput != bitmap) BitmapPool.release(detectInput);
+                    List<Rect> boxes = new ArrayList<>();
+                    for (Face f : task.getResult()) {
+                        Rect b = f.getBoundingBox();
+                        boxes.add(new Rect(Math.round(b.left * inverse), Math.round(b.top * inverse),
+                                Math.round(b.right * inverse), Math.round(b.bottom * inverse)));
+                    }
+                    return boxes;
+                });
+    }
 
-            // Blocking call for simplicity
-            List<Face> faces = Tasks.await(detector.process(image));
+    /** Every detected face as a pooled 160x160 crop; release the ones you don't keep. */
+    public Task<List<Bitmap>> detectFacesAsync(Bitmap bitmap) {
+        return detectBoxesAsync(bitmap, DEFAULT_DETECT_DIMENSION).continueWith(DIRECT, task -> {
+            List<Bitmap> faceList = new ArrayList<>();
+            for (Rect box : task.getResult()) {
+                // Resize each face to 160x160 (FaceNet size)
+                Bitmap face = cropToFaceSize(bitmap, box);
+                if (face != null) faceList.add(face);
+            }
+            return faceList;
+        });
+    }
 
-            if (faces.size() == 0) {
+    /** First face as a pooled 160x160 crop, or null if none was found. */
+    public Task<Bitmap> alignFaceAsync(Bitmap bitmap) {
+        return detectBoxesAsync(bitmap, DEFAULT_DETECT_DIMENSION).continueWith(DIRECT, task -> {
+            List<Rect> boxes = task.getResult();
+            if (boxes.isEmpty()) {
                 Log.d("FaceAligner", "No face detected.");
                 return null;
             }
-
             // Take the first detected face
-            Rect bounds = faces.get(0).getBoundingBox();
-
-            // Ensure bounds are within bitmap dimensions
-            int left = Math.max(bounds.left, 0);
-            int top = Math.max(bounds.top, 0);
-            int width = Math.min(bounds.width(), bitmap.getWidth() - left);
-            int height = Math.min(bounds.height(), bitmap.getHeight() - top);
-
-            Bitmap faceCrop = Bitmap.createBitmap(bitmap, left, top, width, height);
-
-            // Resize to 160x160 for FaceNet
-            return Bitmap.createScaledBitmap(faceCrop, 160, 160, true);
-
-        } catch (Exception e) {
-            e.printStackTrace();
-            Log.e("FaceAligner", "Face alignment failed: " + e.getMessage());
-            return null;
-        }
+            return cropToFaceSize(bitmap, boxes.get(0));
+        });
     }
 
-    public List<Bitmap> detectFaces(Bitmap bitmap) {
-        List<Bitmap> faceList = new ArrayList<>();
-
-        try {
-            InputImage image = InputImage.fromBitmap(bitmap, 0);
-            List<Face> faces = Tasks.await(detector.process(image));
-
-            for (Face f : faces) {
-                Rect b = f.getBoundingBox();
-
-                int left = Math.max(b.left, 0);
-                int top = Math.max(b.top, 0);
-                int width = Math.min(b.width(), bitmap.getWidth() - left);
-                int height = Math.min(b.height(), bitmap.getHeight() - top);
-
-                Bitmap crop = Bitmap.createBitmap(bitmap, left, top, width, height);
-
-                // Resize each face to 160x160 (FaceNet size)
-                faceList.add(Bitmap.createScaledBitmap(crop, 160, 160, true));
-            }
-
-        } catch (Exception e) {
-            e.printStackTrace();
-        }
-
-        return faceList;
+    // Crop and resize in one draw into a pooled 160x160 bitmap
+    private Bitmap cropToFaceSize(Bitmap bitmap, Rect bounds) {
+        // Ensure bounds are within bitmap dimensions
+        int left = Math.max(bounds.left, 0);
+        int top = Math.max(bounds.top, 0);
+        int right = Math.min(bounds.right, bitmap.getWidth());
+        int bottom = Math.min(bounds.bottom, bitmap.getHeight());
+        if (right <= left || bottom <= top) return null;
+
+        Bitmap face = BitmapPool.acquire(FACE_SIZE, FACE_SIZE);
+        new Canvas(face).drawBitmap(bitmap, new Rect(left, top, right, bottom), faceRect, filterPaint);
+        return face;
     }
 
-
     /**
      * Close the detector when done.
      */
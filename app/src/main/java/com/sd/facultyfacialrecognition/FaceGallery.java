@@ -0,0 +1,280 @@
+package com.sd.facultyfacialrecognition;
+
+import android.content.Context;
+import android.util.Log;
+
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Immutable snapshot of the enrolled faculty: per-photo samples, their centroids and a matcher
+ * built over them. A new snapshot is built whenever the gallery changes and swapped in whole,
+ * so a frame always sees one consistent gallery.
+ *
+ * A snapshot only ever holds embeddings of one model; galleries produced by a different model
+ * than the one asked for are refused rather than compared.
+ *
+ * Besides the full matcher, a snapshot can carry a hot tier: a small matcher over the faculty
+ * scheduled in this lab around now, searched first by {@link #getTieredMatcher()}.
+ *
+ * Faculty with an adapted template (see {@link TemplateAdapter}) use it as their centroid and as
+ * one extra sample; the centroid of the enrolled photos alone is kept as the drift anchor.
+ */
+public final class FaceGallery {
+    private static final String TAG = "FaceGallery";
+
+    private final Map<String, float[]> centroids;
+    private final Map<String, List<float[]>> samples;
+    private final Map<String, float[]> enrolledCentroids;
+    private final Map<String, GalleryStore.Adaptation> adaptations;
+    private final FaceMatcher matcher;
+    private final EmbeddingModel.Spec model;
+    private final FaceMatcher.Mode mode;
+    private final Set<String> hotNames;
+    private final TieredMatcher tieredMatcher;
+    private final long loadedAt;
+
+    private FaceGallery(Map<String, float[]> centroids, Map<String, List<float[]>> samples,
+                        FaceMatcher.Mode mode, EmbeddingModel.Spec model) {
+        this(centroids, samples, centroids, new HashMap<>(), mode, model);
+    }
+
+    private FaceGallery(Map<String, float[]> centroids, Map<String, List<float[]>> samples,
+                        Map<String, float[]> enrolledCentroids, Map<String, GalleryStore.Adaptation> adaptations,
+                        FaceMatcher.Mode mode, EmbeddingModel.Spec model) {
+        this.model = model;
+        this.mode = mode;
+        this.centroids = Collections.unmodifiableMap(centroids);
+        this.samples = Collections.unmodifiableMap(samples);
+        this.enrolledCentroids = Collections.unmodifiableMap(enrolledCentroids);
+        this.adaptations = Collections.unmodifiableMap(adaptations);
+        this.matcher = new FaceMatcher(mode, this.centroids, this.samples);
+        this.hotNames = Collections.emptySet();
+        this.tieredMatcher = new TieredMatcher(null, Collections.emptySet(), matcher);
+        this.loadedAt = System.currentTimeMillis();
+    }
+
+    // Same gallery and full matcher, new hot tier
+    private FaceGallery(FaceGallery base, Set<String> hotNames) {
+        this.model = base.model;
+        this.mode = base.mode;
+        this.centroids = base.centroids;
+        this.samples = base.samples;
+        this.enrolledCentroids = base.enrolledCentroids;
+        this.adaptations = base.adaptations;
+        this.matcher = base.matcher;
+        this.loadedAt = base.loadedAt;
+
+        Map<String, float[]> hotCentroids = new HashMap<>();
+        Map<String, List<float[]>> hotSamples = new HashMap<>();
+        Set<String> present = new HashSet<>();
+        for (String name : hotNames) {
+            if (!centroids.containsKey(name)) continue;
+            present.add(name);
+            hotCentroids.put(name, centroids.get(name));
+            if (samples.containsKey(name)) hotSamples.put(name, samples.get(name));
+        }
+        this.hotNames = Collections.unmodifiableSet(present);
+        this.tieredMatcher = present.isEmpty()
+                ? new TieredMatcher(null, this.hotNames, matcher)
+                : new TieredMatcher(new FaceMatcher(mode, hotCentroids, hotSamples), this.hotNames, matcher);
+    }
+
+    /** This snapshot with its hot tier set to the given faculty (names not enrolled are ignored). */
+    public FaceGallery withHotTier(Set<String> names) {
+        return new FaceGallery(this, names);
+    }
+
+    public Set<String> getHotNames() {
+        return hotNames;
+    }
+
+    /** Hot tier first, full gallery when the hot tier isn't confident. */
+    public TieredMatcher getTieredMatcher() {
+        return tieredMatcher;
+    }
+
+    public static FaceGallery empty(FaceMatcher.Mode mode, EmbeddingModel.Spec model) {
+        return new FaceGallery(new HashMap<>(), new HashMap<>(), mode, model);
+    }
+
+    /** The model whose embeddings this gallery holds; probes must come from the same model. */
+    public EmbeddingModel.Spec getModel() {
+        return model;
+    }
+
+    public Map<String, float[]> getCentroids() {
+        return centroids;
+    }
+
+    public Map<String, List<float[]>> getSamples() {
+        return samples;
+    }
+
+    /** Centroid of the enrolled photos only, ignoring any adaptation. */
+    public float[] getEnrolledCentroid(String name) {
+        return enrolledCentroids.get(name);
+    }
+
+    /** The adapted template of name, or null if it has never been adapted. */
+    public GalleryStore.Adaptation getAdaptation(String name) {
+        return adaptations.get(name);
+    }
+
+    /** Number of enrolled photo embeddings of name (the adapted template not counted). */
+    public int enrolledSampleCount(String name) {
+        List<float[]> list = samples.get(name);
+        if (list == null) return 0;
+        return adaptations.containsKey(name) ? list.size() - 1 : list.size();
+    }
+
+    public FaceMatcher getMatcher() {
+        return matcher;
+    }
+
+    public long getLoadedAt() {
+        return loadedAt;
+    }
+
+    public int size() {
+        return centroids.size();
+    }
+
+    /**
+     * Loads every per-photo embedding from the gallery store; returns null if it can't be read
+     * or was produced by a different model.
+     */
+    public static FaceGallery fromStore(GalleryStore store, FaceMatcher.Mode mode, EmbeddingModel.Spec model) {
+        try {
+            Map<String, List<float[]>> stored = store.readAll();
+            if (stored == null) {
+                Log.d(TAG, "Embeddings file does not exist");
+                return null;
+            }
+
+            GalleryStore.ModelInfo info = store.readModelInfo();
+            if (!info.matches(model)) {
+                Log.e(TAG, "Stored gallery was built with " + info.model + " (" + info.dimension
+                        + "-d), active model is " + model + ". Regenerate embeddings.");
+                return null;
+            }
+
+            Map<String, List<float[]>> facultyEmbeddings = new HashMap<>();
+            Map<String, float[]> knownEmbeddings = new HashMap<>();
+            Map<String, float[]> enrolledEmbeddings = new HashMap<>();
+            Map<String, GalleryStore.Adaptation> adaptations = new HashMap<>();
+            Map<String, GalleryStore.Adaptation> storedAdaptations = store.readAdaptations();
+
+            for (Map.Entry<String, List<float[]>> entry : stored.entrySet()) {
+                List<float[]> allEmbeddings = entry.getValue();
+                if (allEmbeddings == null || allEmbeddings.isEmpty()) continue;
+                if (!hasDimension(allEmbeddings, model.embeddingSize)) {
+                    Log.e(TAG, "Refusing gallery: " + entry.getKey() + " has embeddings that are not "
+                            + model.embeddingSize + "-d");
+                    return null;
+                }
+
+                // Store all embeddings, and only one averaged key per person
+                float[] enrolled = average(allEmbeddings);
+                enrolledEmbeddings.put(entry.getKey(), enrolled);
+
+                GalleryStore.Adaptation adapted = storedAdaptations.get(entry.getKey());
+                if (adapted != null && adapted.embedding != null && adapted.embedding.length == model.embeddingSize) {
+                    List<float[]> withTemplate = new ArrayList<>(allEmbeddings);
+                    withTemplate.add(adapted.embedding);
+                    facultyEmbeddings.put(entry.getKey(), Collections.unmodifiableList(withTemplate));
+                    knownEmbeddings.put(entry.getKey(), adapted.embedding);
+                    adaptations.put(entry.getKey(), adapted);
+                } else {
+                    facultyEmbeddings.put(entry.getKey(), Collections.unmodifiableList(allEmbeddings));
+                    knownEmbeddings.put(entry.getKey(), enrolled);
+                }
+            }
+
+            Log.d(TAG, "✅ Embeddings loaded successfully from storage. Faculties loaded: " + facultyEmbeddings.size()
+                    + " (adapted: " + adaptations.size() + ")");
+            return new FaceGallery(knownEmbeddings, facultyEmbeddings, enrolledEmbeddings, adaptations, mode, model);
+
+        } catch (Exception e) {
+            Log.e(TAG, "Failed to load embeddings from storage", e);
+            return null;
+        }
+    }
+
+    /** Bundled fallback gallery (FaceNet); only the first embedding of each person is used. */
+    public static FaceGallery fromAssets(Context context, FaceMatcher.Mode mode, EmbeddingModel.Spec model) {
+        if (model != EmbeddingModel.Spec.FACENET) {
+            Log.w(TAG, "Bundled embeddings are FaceNet; not usable with " + model);
+            return null;
+        }
+
+        try (InputStream is = context.getAssets().open("embeddings.json")) {
+            String json = readStreamToString(is);
+
+            // Parse JSON as Map<String, List<List<Double>>> first
+            Map<String, List<List<Double>>> temp = new Gson().fromJson(
+                    json,
+                    new TypeToken<Map<String, List<List<Double>>>>() {}.getType()
+            );
+
+            Map<String, float[]> knownEmbeddings = new HashMap<>();
+            for (Map.Entry<String, List<List<Double>>> entry : temp.entrySet()) {
+                List<Double> firstEmb = entry.getValue().get(0);
+                float[] embArr = new float[firstEmb.size()];
+                for (int j = 0; j < firstEmb.size(); j++) {
+                    embArr[j] = firstEmb.get(j).floatValue();
+                }
+                knownEmbeddings.put(entry.getKey(), embArr);
+            }
+
+            Log.i(TAG, "✅ Loaded embeddings from assets: " + knownEmbeddings.size());
+            return new FaceGallery(knownEmbeddings, new HashMap<>(), mode, model);
+
+        } catch (Exception e) {
+            Log.e(TAG, "Error loading embeddings from assets", e);
+            return null;
+        }
+    }
+
+    private static boolean hasDimension(List<float[]> embeddings, int dimension) {
+        for (float[] emb : embeddings) {
+            if (emb == null || emb.length != dimension) return false;
+        }
+        return true;
+    }
+
+    // Compute the average embedding for one faculty
+    static float[] average(List<float[]> embeddings) {
+        int embSize = embeddings.get(0).length;
+        float[] avgEmb = new float[embSize];
+        for (float[] emb : embeddings) {
+            for (int j = 0; j < embSize; j++) {
+                avgEmb[j] += emb[j];
+            }
+        }
+        for (int j = 0; j < embSize; j++) {
+            avgEmb[j] /= embeddings.size();
+        }
+        return avgEmb;
+    }
+
+    static String readStreamToString(InputStream is) throws Exception {
+        StringBuilder sb = new StringBuilder();
+        byte[] buffer = new byte[1024];
+        int length;
+        while ((length = is.read(buffer)) != -1) {
+            sb.append(new String(buffer, 0, length, StandardCharsets.UTF_8));
+        }
+        return sb.toString();
+    }
+}
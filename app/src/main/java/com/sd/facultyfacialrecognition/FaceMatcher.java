@@ -0,0 +1,164 @@
+package com.sd.facultyfacialrecognition;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Ranks a probe embedding against the enrolled faculty.
+ *
+ * CENTROID compares against one averaged vector per faculty (the original behaviour).
+ * KNN searches every stored sample and lets the k nearest vote for their identity, which keeps
+ * the pose and lighting spread that averaging throws away.
+ *
+ * When the expected person is already known, {@link #verify} compares only against that one
+ * identity instead of ranking the whole gallery. {@link #rankAll} ranks several probes (all
+ * faces of one frame) in a single pass over the gallery.
+ */
+public class FaceMatcher {
+
+    public enum Mode { CENTROID, KNN }
+
+    // Same scale the ranking log has always used: accuracy = 1 - distance / MAX_DISTANCE
+    public static final float MAX_DISTANCE = 10f;
+    public static final int DEFAULT_K = 5;
+    // 1:1 acceptance distance, between the genuine (~0.7) and impostor (~1.2) means
+    public static final float VERIFY_THRESHOLD = 0.90f;
+
+    private final Mode mode;
+    private final int k;
+    private final Map<String, float[]> centroids;
+    private final Map<String, List<float[]>> samples;
+    private final SampleIndex index;
+
+    public FaceMatcher(Mode mode, Map<String, float[]> centroids, Map<String, List<float[]>> samples) {
+        this(mode, DEFAULT_K, centroids, samples);
+    }
+
+    public FaceMatcher(Mode mode, int k, Map<String, float[]> centroids, Map<String, List<float[]>> samples) {
+        this.k = k;
+        this.centroids = centroids;
+        this.samples = samples != null ? samples : new HashMap<>();
+        this.index = samples != null && !samples.isEmpty() ? new SampleIndex(samples) : null;
+        // KNN needs per-sample data; galleries loaded from assets only carry one vector each
+        this.mode = (mode == Mode.KNN && index != null && index.size() > 0) ? Mode.KNN : Mode.CENTROID;
+    }
+
+    public Mode getMode() {
+        return mode;
+    }
+
+    public SampleIndex getIndex() {
+        return index;
+    }
+
+    /** Best match first. Returns an empty list when the gallery is empty. */
+    public List<Match> rank(float[] emb) {
+        return mode == Mode.KNN ? rankKnn(emb, -1) : rankCentroid(emb);
+    }
+
+    /** {@link #rank} for every probe, sharing one pass over the gallery. Null probes get an empty list. */
+    public List<List<Match>> rankAll(List<float[]> embs) {
+        int n = embs.size();
+        List<List<Match>> out = new ArrayList<>(n);
+        if (mode == Mode.KNN) {
+            float[][] queries = embs.toArray(new float[0][]);
+            int[][] rows = new int[n][k];
+            float[][] dists = new float[n][k];
+            int[] found = new int[n];
+            index.topKBatch(queries, k, rows, dists, found);
+            for (int q = 0; q < n; q++) out.add(vote(rows[q], dists[q], found[q]));
+            return out;
+        }
+
+        for (int q = 0; q < n; q++) out.add(new ArrayList<>(centroids.size()));
+        for (Map.Entry<String, float[]> entry : centroids.entrySet()) {
+            for (int q = 0; q < n; q++) {
+                if (embs.get(q) == null) continue;
+                out.get(q).add(new Match(entry.getKey(), FaceNet.distance(embs.get(q), entry.getValue()), 1));
+            }
+        }
+        for (List<Match> ranking : out) ranking.sort((a, b) -> Float.compare(a.distance, b.distance));
+        return out;
+    }
+
+    public boolean hasIdentity(String name) {
+        return name != null && (samples.containsKey(name) || centroids.containsKey(name));
+    }
+
+    /**
+     * Distance to one identity only: its nearest stored sample, or its centroid when no samples
+     * are loaded. Null if the identity isn't enrolled. Compare against {@link #VERIFY_THRESHOLD}.
+     */
+    public Match verify(float[] emb, String name) {
+        List<float[]> own = samples.get(name);
+        if (own != null && !own.isEmpty()) {
+            float best = Float.MAX_VALUE;
+            for (float[] sample : own) best = Math.min(best, FaceNet.distance(emb, sample));
+            return new Match(name, best, own.size());
+        }
+        float[] centroid = centroids.get(name);
+        return centroid != null ? new Match(name, FaceNet.distance(emb, centroid), 1) : null;
+    }
+
+    public List<Match> rankCentroid(float[] emb) {
+        List<Match> out = new ArrayList<>(centroids.size());
+        for (Map.Entry<String, float[]> entry : centroids.entrySet()) {
+            float distance = FaceNet.distance(emb, entry.getValue());
+            out.add(new Match(entry.getKey(), distance, 1));
+        }
+        out.sort((a, b) -> Float.compare(a.distance, b.distance));
+        return out;
+    }
+
+    /** Weighted k-NN vote over every sample; excludeRow supports leave-one-out evaluation. */
+    List<Match> rankKnn(float[] emb, int excludeRow) {
+        int[] rows = new int[k];
+        float[] dists = new float[k];
+        int found = index.topK(emb, k, rows, dists, excludeRow);
+        return vote(rows, dists, found);
+    }
+
+    private List<Match> vote(int[] rows, float[] dists, int found) {
+        Map<String, Match> byName = new HashMap<>();
+        for (int i = 0; i < found; i++) {
+            String name = index.labelAt(rows[i]);
+            // Closer neighbours carry more weight so one near-identical sample beats two distant ones
+            float weight = 1f / (dists[i] + 1e-3f);
+
+            Match m = byName.get(name);
+            if (m == null) {
+                m = new Match(name, dists[i], 0);
+                byName.put(name, m);
+            }
+            m.votes++;
+            m.weight += weight;
+            m.distance = Math.min(m.distance, dists[i]);
+        }
+
+        List<Match> out = new ArrayList<>(byName.values());
+        out.sort((a, b) -> {
+            int byWeight = Float.compare(b.weight, a.weight);
+            return byWeight != 0 ? byWeight : Float.compare(a.distance, b.distance);
+        });
+        return out;
+    }
+
+    public static class Match {
+        public final String name;
+        public float distance;
+        public int votes;
+        public float weight;
+
+        Match(String name, float distance, int votes) {
+            this.name = name;
+            this.distance = distance;
+            this.votes = votes;
+        }
+
+        public float accuracy() {
+            return 1f - (distance / MAX_DISTANCE);
+        }
+    }
+}
@@ -3,90 +3,267 @@ package com.sd.facultyfacialrecognition;
 import android.content.Context;
 import android.content.res.AssetFileDescriptor;
 import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.os.SystemClock;
 import android.util.Log;
 
 import org.tensorflow.lite.Interpreter;
 
 import java.io.FileInputStream;
 import java.io.IOException;
-import java.nio.ByteBuffer;
-import java.nio.ByteOrder;
 import java.nio.MappedByteBuffer;
 import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
-public class FaceNet {
+/**
+ * TFLite FaceNet-family embedding model (FaceNet, MobileFaceNet), shaped by its
+ * {@link EmbeddingModel.Spec}. {@link #shared} hands out one process-wide instance per spec, so
+ * the model is mapped and the interpreter built once per process no matter which activity asks
+ * first. Every instance runs one warm-up inference on each of its interpreters when it is built,
+ * so tensor allocation and kernel setup don't land on the first person (or group) at the door.
+ *
+ * {@link #getEmbeddings} runs several faces in one invocation. Batches go to separate
+ * interpreters whose input tensors were sized once, for a padded batch of 2 or
+ * {@link #MAX_BATCH}, so a changing number of faces never reallocates tensors and the
+ * single-face interpreter stays as it is. Models exported with a fixed batch of one fall back to
+ * one call per face.
+ */
+public class FaceNet implements EmbeddingModel {
     private static final String TAG = "FaceNet";
+    // Largest batch one invocation takes; more faces run in chunks of this size
+    private static final int MAX_BATCH = 4;
     private Interpreter tflite;
-    private static final int INPUT_SIZE = 160;
-    private static final int EMBEDDING_SIZE = 128;
+    private final MappedByteBuffer modelBuffer;
+    private final Spec spec;
+    private final int inputSize;
 
-    public FaceNet(Context context, String modelPath) throws IOException {
-        try {
-            tflite = new Interpreter(loadModelFile(context, modelPath));
-            Log.d(TAG, "FaceNet model loaded successfully from file path.");
-        } catch (Exception e) {
-            Log.w(TAG, "Could not load model from file, trying assets...");
-            tflite = new Interpreter(loadModelFromAssets(context, "facenet.tflite"));
-            Log.d(TAG, "FaceNet model loaded successfully from assets.");
+    // Process-wide model buffers (keyed by asset name or path) and shared instances (by spec name)
+    private static final Map<String, MappedByteBuffer> modelCache = new HashMap<>();
+    private static final Map<String, FaceNet> sharedInstances = new HashMap<>();
+
+    // Reused across calls; getEmbedding is synchronized so one set of buffers is enough
+    private final int[] pixels;
+    private final float[][][][] input;
+    private final float[][] output;
+    private final Rect inputRect;
+    private final Paint filterPaint = new Paint(Paint.FILTER_BITMAP_FLAG);
+    private final boolean isShared;
+    private long warmUpMillis;
+
+    // Batch interpreters by padded batch size, each built and allocated once
+    private final Map<Integer, BatchRunner> batchRunners = new HashMap<>();
+    private boolean batchUnsupported = false;
+
+    /** The process-wide instance of the active model. */
+    public static FaceNet shared(Context context) throws IOException {
+        return shared(context, EmbeddingModel.ACTIVE);
+    }
+
+    /**
+     * The process-wide instance for spec. Activities use this and must not rely on close():
+     * it is a no-op for shared instances.
+     */
+    public static synchronized FaceNet shared(Context context, Spec spec) throws IOException {
+        FaceNet model = sharedInstances.get(spec.name);
+        if (model == null) {
+            model = new FaceNet(context, spec, true);
+            sharedInstances.put(spec.name, model);
         }
+        return model;
+    }
+
+    /**
+     * A private instance, closed by its owner. spec.modelPath is an absolute file path, or
+     * otherwise the name of an asset. Failing to load it is an error; there is no fallback to a
+     * different model.
+     */
+    public FaceNet(Context context, Spec spec) throws IOException {
+        this(context, spec, false);
     }
 
-    private MappedByteBuffer loadModelFile(Context context, String modelPath) throws IOException {
-        FileInputStream fis = new FileInputStream(modelPath);
-        FileChannel fc = fis.getChannel();
-        long declaredLength = fc.size();
-        return fc.map(FileChannel.MapMode.READ_ONLY, 0, declaredLength);
+    private FaceNet(Context context, Spec spec, boolean isShared) throws IOException {
+        this.spec = spec;
+        this.isShared = isShared;
+        this.inputSize = spec.inputSize;
+        pixels = new int[inputSize * inputSize];
+        input = new float[1][inputSize][inputSize][3];
+        output = new float[1][spec.embeddingSize];
+        inputRect = new Rect(0, 0, inputSize, inputSize);
+
+        modelBuffer = loadModel(context, spec.modelPath);
+        tflite = new Interpreter(modelBuffer);
+        int[] outShape = tflite.getOutputTensor(0).shape();
+        if (outShape[outShape.length - 1] != spec.embeddingSize) {
+            tflite.close();
+            throw new IOException(spec.modelPath + " outputs " + outShape[outShape.length - 1]
+                    + "-d embeddings, expected " + spec.embeddingSize);
+        }
+        Log.d(TAG, "Model loaded: " + spec);
+        warmUp();
     }
 
-    private MappedByteBuffer loadModelFromAssets(Context context, String assetName) throws IOException {
-        AssetFileDescriptor fileDescriptor = context.getAssets().openFd(assetName);
-        FileInputStream inputStream = new FileInputStream(fileDescriptor.getFileDescriptor());
-        FileChannel fileChannel = inputStream.getChannel();
-        long startOffset = fileDescriptor.getStartOffset();
-        long declaredLength = fileDescriptor.getDeclaredLength();
-        return fileChannel.map(FileChannel.MapMode.READ_ONLY, startOffset, declaredLength);
+    @Override
+    public Spec getSpec() {
+        return spec;
     }
 
-    public float[] getEmbedding(Bitmap bitmap) {
-        if (bitmap == null) {
-            Log.e(TAG, "Bitmap is null");
-            return null;
+    private static MappedByteBuffer loadModel(Context context, String modelPath) throws IOException {
+        synchronized (modelCache) {
+            MappedByteBuffer model = modelCache.get(modelPath);
+            if (model == null) {
+                model = modelPath.startsWith("/")
+                        ? loadModelFile(modelPath)
+                        : loadModelFromAssets(context, modelPath);
+                modelCache.put(modelPath, model);
+            }
+            return model;
         }
+    }
 
-        // Scaling (from InputImageUtils.getBitmapFromInputImage or alignAndCropFace)
-        // must result in a face that can be scaled to 160x160 here
-        Bitmap scaled = Bitmap.createScaledBitmap(bitmap, INPUT_SIZE, INPUT_SIZE, true);
-
-        float[][][][] input = new float[1][INPUT_SIZE][INPUT_SIZE][3];
-        for (int y = 0; y < INPUT_SIZE; y++) {
-            for (int x = 0; x < INPUT_SIZE; x++) {
-                int pixel = scaled.getPixel(x, y);
-                float r = ((pixel >> 16) & 0xFF) / 255.0f;
-                float g = ((pixel >> 8) & 0xFF) / 255.0f;
-                float b = (pixel & 0xFF) / 255.0f;
-                // **Pre-processing (Normalization to [-1, 1]):**
-                // This must exactly match the model's training!
-                input[0][y][x][0] = (r - 0.5f) * 2.0f;
-                input[0][y][x][1] = (g - 0.5f) * 2.0f;
-                input[0][y][x][2] = (b - 0.5f) * 2.0f;
+    private static MappedByteBuffer loadModelFile(String modelPath) throws IOException {
+        try (FileInputStream fis = new FileInputStream(modelPath)) {
+            FileChannel fc = fis.getChannel();
+            long declaredLength = fc.size();
+            return fc.map(FileChannel.MapMode.READ_ONLY, 0, declaredLength);
+        }
+    }
+
+    private static MappedByteBuffer loadModelFromAssets(Context context, String assetName) throws IOException {
+        try (AssetFileDescriptor fileDescriptor = context.getAssets().openFd(assetName);
+             FileInputStream inputStream = new FileInputStream(fileDescriptor.getFileDescriptor())) {
+            FileChannel fileChannel = inputStream.getChannel();
+            long startOffset = fileDescriptor.getStartOffset();
+            long declaredLength = fileDescriptor.getDeclaredLength();
+            return fileChannel.map(FileChannel.MapMode.READ_ONLY, startOffset, declaredLength);
+        }
+    }
+
+    // One inference on a blank input so allocation and kernel setup happen now
+    private synchronized void warmUp() {
+        long start = SystemClock.elapsedRealtime();
+        try {
+            tflite.run(input, output);
+        } catch (Exception e) {
+            Log.e(TAG, "Warm-up inference failed", e);
+        }
+        // The batch interpreters too, so the first crowded frame doesn't build and allocate them
+        for (int size = 2; size <= MAX_BATCH; size <<= 1) {
+            BatchRunner runner = batchRunner(size);
+            if (runner == null) break;
+            try {
+                runner.interpreter.run(runner.input, runner.output);
+            } catch (Exception e) {
+                Log.e(TAG, "Warm-up inference failed for a batch of " + size, e);
             }
         }
+        warmUpMillis = SystemClock.elapsedRealtime() - start;
+        Log.i(TAG, "Warm-up inference took " + warmUpMillis + " ms");
+    }
+
+    public long getWarmUpMillis() {
+        return warmUpMillis;
+    }
+
+    @Override
+    public synchronized float[] getEmbedding(Bitmap bitmap) {
+        if (bitmap == null) {
+            Log.e(TAG, "Bitmap is null");
+            return null;
+        }
+        fillInput(bitmap, input[0]);
 
-        float[][] embedding = new float[1][EMBEDDING_SIZE];
         try {
-            tflite.run(input, embedding);
+            tflite.run(input, output);
         } catch (Exception e) {
             Log.e(TAG, "Error running inference", e);
             return null;
         }
 
-        float[] emb = embedding[0];
+        // Callers keep the embedding, so hand out a copy of the reused output row
+        float[] emb = output[0].clone();
         // **L2 Normalization (often required for FaceNet embeddings):**
         l2Normalize(emb);
 
         return emb;
     }
 
+    /** All faces in as few interpreter invocations as possible; null entries (or null bitmaps) where it failed. */
+    @Override
+    public synchronized List<float[]> getEmbeddings(List<Bitmap> bitmaps) {
+        int n = bitmaps.size();
+        List<float[]> out = new ArrayList<>(n);
+        for (int start = 0; start < n; start += MAX_BATCH) {
+            List<Bitmap> chunk = bitmaps.subList(start, Math.min(n, start + MAX_BATCH));
+            BatchRunner runner = chunk.size() > 1 ? batchRunner(paddedBatch(chunk.size())) : null;
+            if (runner == null) {
+                for (Bitmap b : chunk) out.add(getEmbedding(b));
+            } else {
+                runner.run(chunk, out);
+            }
+        }
+        return out;
+    }
+
+    // Smallest power of two that holds n faces
+    private static int paddedBatch(int n) {
+        return Integer.highestOneBit(n - 1) << 1;
+    }
+
+    // The interpreter for a padded batch, built at warm-up; null if the model can't batch
+    private BatchRunner batchRunner(int size) {
+        if (batchUnsupported) return null;
+        BatchRunner runner = batchRunners.get(size);
+        if (runner != null) return runner;
+
+        Interpreter interpreter = null;
+        try {
+            interpreter = new Interpreter(modelBuffer);
+            interpreter.resizeInput(0, new int[]{size, inputSize, inputSize, 3});
+            interpreter.allocateTensors();
+        } catch (Exception e) {
+            Log.w(TAG, "Model does not accept a batch of " + size + ", running faces one by one", e);
+            if (interpreter != null) interpreter.close();
+            batchUnsupported = true;
+            return null;
+        }
+        runner = new BatchRunner(interpreter, size);
+        batchRunners.put(size, runner);
+        return runner;
+    }
+
+    // Scales the face to the input size if needed and writes (v - mean) / std into dst
+    private void fillInput(Bitmap bitmap, float[][][] dst) {
+        // Scaling (from InputImageUtils.getBitmapFromInputImage or alignAndCropFace)
+        // must result in a face that can be scaled to the model input size here
+        Bitmap scaled = bitmap;
+        if (bitmap.getWidth() != inputSize || bitmap.getHeight() != inputSize) {
+            scaled = BitmapPool.acquire(inputSize, inputSize);
+            scaled.eraseColor(Color.TRANSPARENT);
+            new Canvas(scaled).drawBitmap(bitmap, null, inputRect, filterPaint);
+        }
+        scaled.getPixels(pixels, 0, inputSize, 0, 0, inputSize, inputSize);
+        if (scaled != bitmap) BitmapPool.release(scaled);
+
+        float mean = spec.inputMean;
+        float invStd = 1f / spec.inputStd;
+        for (int y = 0; y < inputSize; y++) {
+            for (int x = 0; x < inputSize; x++) {
+                int pixel = pixels[y * inputSize + x];
+                // **Pre-processing:** (v - mean) / std, as declared by the model's spec.
+                // This must exactly match the model's training! FaceNet's is [-1, 1].
+                dst[y][x][0] = (((pixel >> 16) & 0xFF) - mean) * invStd;
+                dst[y][x][1] = (((pixel >> 8) & 0xFF) - mean) * invStd;
+                dst[y][x][2] = ((pixel & 0xFF) - mean) * invStd;
+            }
+        }
+    }
+
     private void l2Normalize(float[] emb) {
         double sum = 0.0;
         for (float v : emb) sum += v * v;
@@ -108,10 +285,52 @@ public class FaceNet {
         return (float) Math.sqrt(sum);
     }
 
-    public void close() {
+    /** Closes a private instance. Shared instances live as long as the process. */
+    @Override
+    public synchronized void close() {
+        if (isShared) return;
         if (tflite != null) {
             tflite.close();
             tflite = null;
         }
+        for (BatchRunner runner : batchRunners.values()) runner.interpreter.close();
+        batchRunners.clear();
+    }
+
+    // An interpreter sized for a fixed batch, with its buffers. Rows past the real faces are
+    // padding: their input is whatever was there before and their output is ignored.
+    private class BatchRunner {
+        final Interpreter interpreter;
+        final float[][][][] input;
+        final float[][] output;
+
+        BatchRunner(Interpreter interpreter, int size) {
+            this.interpreter = interpreter;
+            input = new float[size][inputSize][inputSize][3];
+            output = new float[size][spec.embeddingSize];
+        }
+
+        void run(List<Bitmap> faces, List<float[]> out) {
+            for (int i = 0; i < faces.size(); i++) {
+                Bitmap b = faces.get(i);
+                if (b != null) fillInput(b, input[i]);
+            }
+            try {
+                interpreter.run(input, output);
+            } catch (Exception e) {
+                Log.e(TAG, "Error running batched inference", e);
+                for (int i = 0; i < faces.size(); i++) out.add(null);
+                return;
+            }
+            for (int i = 0; i < faces.size(); i++) {
+                if (faces.get(i) == null) {
+                    out.add(null);
+                    continue;
+                }
+                float[] emb = output[i].clone();
+                l2Normalize(emb);
+                out.add(emb);
+            }
+        }
     }
 }
\ No newline at end of file
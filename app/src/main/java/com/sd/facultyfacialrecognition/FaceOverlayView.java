@@ -6,20 +6,39 @@ import android.graphics.Color;
 import android.graphics.Matrix;
 import android.graphics.Paint;
 import android.graphics.Rect;
+import android.text.TextUtils;
 import android.util.AttributeSet;
 import android.view.View;
 
-import java.util.ArrayList;
 import java.util.List;
 
+/**
+ * Draws face boxes over the camera preview.
+ *
+ * {@link #setFaces} may be called from any thread. It copies the boxes into the back of two
+ * preallocated buffers and swaps them, so onDraw only reads the front buffer and nothing is
+ * allocated per frame. When no box moved more than {@link #MOVE_TOLERANCE_PX} on screen and the
+ * labels are the same, the update is dropped without an invalidate.
+ */
 public class FaceOverlayView extends View {
-    private List<FaceGraphic> faces = new ArrayList<>();
+    private static final int MAX_FACES = 10;
+    private static final float MOVE_TOLERANCE_PX = 2f;
+
+    private final Object lock = new Object();
+    private FaceBuffer front = new FaceBuffer();
+    private FaceBuffer back = new FaceBuffer();
+
     private Paint boxPaint;
     private Paint textPaint;
 
-    private int imageWidth = 0;
-    private int imageHeight = 0;
-    private boolean isFrontCamera = true;
+    private volatile int imageWidth = 0;
+    private volatile int imageHeight = 0;
+    private volatile boolean isFrontCamera = true;
+
+    // Reused by onDraw
+    private final Matrix transform = new Matrix();
+    private final float[] pts = new float[4];
+    private final Rect scaledRect = new Rect();
 
     public FaceOverlayView(Context context, AttributeSet attrs) {
         super(context, attrs);
@@ -37,49 +56,68 @@ public class FaceOverlayView extends View {
         textPaint.setColor(Color.WHITE);
     }
 
+    /** Copies the graphics; the caller may reuse the list and its items afterwards. */
     public void setFaces(List<FaceGraphic> newFaces) {
-        this.faces = newFaces;
-        invalidate();
+        synchronized (lock) {
+            back.copyFrom(newFaces);
+            if (back.sameAs(front, MOVE_TOLERANCE_PX / screenScale())) return;
+
+            FaceBuffer t = front;
+            front = back;
+            back = t;
+        }
+        postInvalidate();
     }
 
     public void setImageSourceInfo(int width, int height, boolean isFront) {
+        if (width == imageWidth && height == imageHeight && isFront == isFrontCamera) return;
         this.imageWidth = width;
         this.imageHeight = height;
         this.isFrontCamera = isFront;
+        postInvalidate();
+    }
+
+    // View pixels per image pixel (the smaller axis, so the tolerance errs on redrawing)
+    private float screenScale() {
+        if (imageWidth == 0 || imageHeight == 0 || getWidth() == 0) return 1f;
+        return Math.max(1e-3f, Math.min(getWidth() / (float) imageWidth, getHeight() / (float) imageHeight));
     }
 
     @Override
     protected void onDraw(Canvas canvas) {
         super.onDraw(canvas);
-        if (faces == null || faces.isEmpty() || imageWidth == 0 || imageHeight == 0) return;
+        if (imageWidth == 0 || imageHeight == 0) return;
 
         float scaleX = getWidth() / (float) imageWidth;
         float scaleY = getHeight() / (float) imageHeight;
 
-        Matrix transform = new Matrix();
+        transform.reset();
         if (isFrontCamera) {
             transform.setScale(-1, 1);
             transform.postTranslate(getWidth(), 0);
         }
 
-        for (FaceGraphic face : faces) {
-            Rect rect = face.rect;
-
-            float left = rect.left * scaleX;
-            float top = rect.top * scaleY;
-            float right = rect.right * scaleX;
-            float bottom = rect.bottom * scaleY;
-
-            float[] pts = {left, top, right, bottom};
-            transform.mapPoints(pts);
-
-            float newLeft = Math.min(pts[0], pts[2]);
-            float newRight = Math.max(pts[0], pts[2]);
-
-            Rect scaledRect = new Rect((int) newLeft, (int) top, (int) newRight, (int) bottom);
-
-            canvas.drawRect(scaledRect, boxPaint);
-            canvas.drawText(face.label, scaledRect.left, Math.max(scaledRect.top - 10, 40), textPaint);
+        synchronized (lock) {
+            FaceBuffer faces = front;
+            for (int i = 0; i < faces.count; i++) {
+                FaceGraphic face = faces.items[i];
+                Rect rect = face.rect;
+
+                pts[0] = rect.left * scaleX;
+                pts[1] = rect.top * scaleY;
+                pts[2] = rect.right * scaleX;
+                pts[3] = rect.bottom * scaleY;
+                float top = pts[1];
+                float bottom = pts[3];
+                transform.mapPoints(pts);
+
+                float newLeft = Math.min(pts[0], pts[2]);
+                float newRight = Math.max(pts[0], pts[2]);
+
+                scaledRect.set((int) newLeft, (int) top, (int) newRight, (int) bottom);
+                canvas.drawRect(scaledRect, boxPaint);
+                canvas.drawText(face.label, scaledRect.left, Math.max(scaledRect.top - 10, 40), textPaint);
+            }
         }
     }
 
@@ -94,4 +132,38 @@ public class FaceOverlayView extends View {
             this.distance = distance;
         }
     }
-}
\ No newline at end of file
+
+    // Fixed slots with their own Rects; only values are copied in
+    private static class FaceBuffer {
+        final FaceGraphic[] items = new FaceGraphic[MAX_FACES];
+        int count = 0;
+
+        FaceBuffer() {
+            for (int i = 0; i < MAX_FACES; i++) items[i] = new FaceGraphic(new Rect(), "", 0f);
+        }
+
+        void copyFrom(List<FaceGraphic> src) {
+            count = src == null ? 0 : Math.min(src.size(), MAX_FACES);
+            for (int i = 0; i < count; i++) {
+                FaceGraphic s = src.get(i);
+                items[i].rect.set(s.rect);
+                items[i].label = s.label == null ? "" : s.label;
+                items[i].distance = s.distance;
+            }
+        }
+
+        boolean sameAs(FaceBuffer other, float tolerance) {
+            if (count != other.count) return false;
+            for (int i = 0; i < count; i++) {
+                Rect a = items[i].rect;
+                Rect b = other.items[i].rect;
+                if (Math.abs(a.left - b.left) > tolerance || Math.abs(a.top - b.top) > tolerance
+                        || Math.abs(a.right - b.right) > tolerance || Math.abs(a.bottom - b.bottom) > tolerance
+                        || !TextUtils.equals(items[i].label, other.items[i].label)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
@@ -0,0 +1,202 @@
+package com.sd.facultyfacialrecognition;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.util.Log;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Single-pass face quality scorer used by Drive import and live recognition.
+ *
+ * The face is converted to integer luma once into a reusable buffer (large inputs are
+ * sampled down to about {@link #MAX_WIDTH} columns on the fly). One pass over that buffer then
+ * yields the Laplacian variance (sharpness), mean brightness and contrast. Instances keep
+ * their buffers between calls, so use one per thread.
+ */
+public class FaceQuality {
+    private static final String TAG = "FaceQuality";
+
+    private static final int MAX_WIDTH = 200;
+
+    // Laplacian variance below this is treated as blurry. Not on the old isBlurry scale (that used
+    // 8 neighbours on a 200px resample); benchmark() logs the value that matches the old verdicts.
+    public static final float BLUR_VARIANCE_THRESHOLD = 15f;
+    private static final double LEGACY_BLUR_THRESHOLD = 15.0;
+    private static final int BENCHMARK_MAX_PHOTOS = 200;
+    // Live frames scoring below this are not worth a FaceNet inference
+    public static final float MIN_LIVE_SCORE = 0.35f;
+
+    private static final float SHARPNESS_GOOD = 60f;
+    private static final float CONTRAST_GOOD = 50f;
+    private static final float FACE_SIZE_GOOD = 160f;
+
+    private int[] row = new int[0];
+    private int[] luma = new int[0];
+
+    private static final ThreadLocal<FaceQuality> PER_THREAD = new ThreadLocal<FaceQuality>() {
+        @Override
+        protected FaceQuality initialValue() {
+            return new FaceQuality();
+        }
+    };
+
+    /** Scorer owned by the calling thread. */
+    public static FaceQuality get() {
+        return PER_THREAD.get();
+    }
+
+    /**
+     * faceWidthPx is the face width in the source frame, or 0 when unknown (e.g. a pre-cropped
+     * photo), in which case size does not count against the score.
+     */
+    public Score score(Bitmap face, int faceWidthPx) {
+        Score s = new Score();
+        if (face == null || face.getWidth() < 3 || face.getHeight() < 3) return s;
+
+        int step = Math.max(1, (face.getWidth() + MAX_WIDTH - 1) / MAX_WIDTH);
+        int w = face.getWidth() / step;
+        int h = face.getHeight() / step;
+        if (w < 3 || h < 3) return s;
+
+        if (row.length < face.getWidth()) row = new int[face.getWidth()];
+        if (luma.length < w * h) luma = new int[w * h];
+
+        // 1. Luma conversion, reading only the sampled rows
+        for (int y = 0; y < h; y++) {
+            face.getPixels(row, 0, face.getWidth(), 0, y * step, face.getWidth(), 1);
+            int base = y * w;
+            for (int x = 0; x < w; x++) {
+                int c = row[x * step];
+                luma[base + x] = (77 * ((c >> 16) & 0xff) + 150 * ((c >> 8) & 0xff) + 29 * (c & 0xff)) >> 8;
+            }
+        }
+
+        // 2. One pass: Laplacian as the sum of the horizontal and vertical second differences,
+        // plus brightness and contrast statistics
+        long lapSum = 0, lapSumSq = 0, lumaSum = 0, lumaSumSq = 0;
+        int lapCount = 0;
+        for (int y = 1; y < h - 1; y++) {
+            int base = y * w;
+            for (int x = 1; x < w - 1; x++) {
+                int i = base + x;
+                int c = luma[i];
+                int d2x = luma[i - 1] + luma[i + 1] - 2 * c;
+                int d2y = luma[i - w] + luma[i + w] - 2 * c;
+                // divided by 4: (neighbour average - centre) over the 4 direct neighbours
+                int lap = (d2x + d2y) / 4;
+                lapSum += lap;
+                lapSumSq += lap * lap;
+                lumaSum += c;
+                lumaSumSq += c * c;
+                lapCount++;
+            }
+        }
+        if (lapCount == 0) return s;
+
+        double lapMean = (double) lapSum / lapCount;
+        s.sharpness = (float) (((double) lapSumSq / lapCount) - lapMean * lapMean);
+        double mean = (double) lumaSum / lapCount;
+        s.brightness = (float) mean;
+        s.contrast = (float) Math.sqrt(Math.max(0, ((double) lumaSumSq / lapCount) - mean * mean));
+        s.faceSize = faceWidthPx;
+
+        float sharp = clamp(s.sharpness / SHARPNESS_GOOD);
+        float exposure = clamp(1f - Math.abs(s.brightness - 128f) / 128f);
+        float contrast = clamp(s.contrast / CONTRAST_GOOD);
+        float size = faceWidthPx > 0 ? clamp(faceWidthPx / FACE_SIZE_GOOD) : 1f;
+        s.score = 0.5f * sharp + 0.2f * exposure + 0.15f * contrast + 0.15f * size;
+        return s;
+    }
+
+    private static float clamp(float v) {
+        return Math.max(0f, Math.min(1f, v));
+    }
+
+    /**
+     * Runs the old ImageProcessing blur check and this scorer over the enrolled photos in
+     * galleryDir (one folder per faculty): average time per photo, how often the two blur verdicts
+     * agree, and the {@link #BLUR_VARIANCE_THRESHOLD} that would flag as many photos as the old
+     * check did.
+     */
+    public static void benchmark(File galleryDir, int iterations) {
+        List<Bitmap> photos = loadPhotos(galleryDir);
+        if (photos.isEmpty() || iterations <= 0) {
+            Log.w(TAG, "Nothing to benchmark");
+            return;
+        }
+        FaceQuality scorer = new FaceQuality();
+        double[] legacy = new double[photos.size()];
+        float[] sharpness = new float[photos.size()];
+        long legacyNanos = 0, scorerNanos = 0;
+
+        for (int i = 0; i < photos.size(); i++) {
+            Bitmap photo = photos.get(i);
+            scorer.score(photo, 0); // size the buffers
+            long t0 = System.nanoTime();
+            for (int n = 0; n < iterations; n++) legacy[i] = ImageProcessing.blurVarianceLegacy(photo);
+            long t1 = System.nanoTime();
+            for (int n = 0; n < iterations; n++) sharpness[i] = scorer.score(photo, 0).sharpness;
+            long t2 = System.nanoTime();
+            legacyNanos += t1 - t0;
+            scorerNanos += t2 - t1;
+        }
+
+        int agree = 0, legacyBlurry = 0;
+        for (int i = 0; i < photos.size(); i++) {
+            boolean oldVerdict = legacy[i] < LEGACY_BLUR_THRESHOLD;
+            if (oldVerdict) legacyBlurry++;
+            if (oldVerdict == sharpness[i] < BLUR_VARIANCE_THRESHOLD) agree++;
+        }
+        // Threshold on the new scale that flags the same fraction of photos as the old one
+        float[] sorted = sharpness.clone();
+        Arrays.sort(sorted);
+        float matched = legacyBlurry == 0 ? sorted[0] : sorted[legacyBlurry - 1];
+
+        int runs = photos.size() * iterations;
+        Log.i(TAG, String.format(Locale.US, "%d photos: legacy isBlurry %.3f ms, FaceQuality %.3f ms (avg of %d)",
+                photos.size(), legacyNanos / 1e6 / runs, scorerNanos / 1e6 / runs, iterations));
+        Log.i(TAG, String.format(Locale.US, "blur verdicts agree on %.1f%%; legacy flags %d, matching threshold ~%.1f (now %.1f)",
+                100.0 * agree / photos.size(), legacyBlurry, matched, BLUR_VARIANCE_THRESHOLD));
+
+        for (Bitmap b : photos) b.recycle();
+    }
+
+    private static List<Bitmap> loadPhotos(File galleryDir) {
+        List<Bitmap> photos = new ArrayList<>();
+        File[] facultyDirs = galleryDir != null ? galleryDir.listFiles(File::isDirectory) : null;
+        if (facultyDirs == null) return photos;
+        for (File facultyDir : facultyDirs) {
+            File[] files = facultyDir.listFiles((dir, name) -> name.endsWith(".jpg"));
+            if (files == null) continue;
+            for (File f : files) {
+                if (photos.size() >= BENCHMARK_MAX_PHOTOS) return photos;
+                Bitmap bmp = BitmapFactory.decodeFile(f.getAbsolutePath());
+                if (bmp != null) photos.add(bmp);
+            }
+        }
+        return photos;
+    }
+
+    public static class Score {
+        public float sharpness;
+        public float brightness;
+        public float contrast;
+        public float faceSize;
+        public float score;
+
+        public boolean isBlurry() {
+            return sharpness < BLUR_VARIANCE_THRESHOLD;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.US, "score=%.2f sharp=%.1f bright=%.0f contrast=%.1f size=%.0f",
+                    score, sharpness, brightness, contrast, faceSize);
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package com.sd.facultyfacialrecognition;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.text.TextUtils;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.google.firebase.database.DataSnapshot;
+import com.google.firebase.database.DatabaseError;
+import com.google.firebase.database.DatabaseReference;
+import com.google.firebase.database.FirebaseDatabase;
+import com.google.firebase.database.ValueEventListener;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Occupancy of one lab, followed through a long-lived listener on {lab}/Latest in the Realtime
+ * Database. The last known value is persisted, so a restarted kiosk starts from it immediately
+ * and corrects itself as soon as the listener delivers.
+ */
+public class FirebaseOccupancyCache implements OccupancyCache {
+    private static final String TAG = "OccupancyCache";
+    private static final String PREFS = "occupancy";
+
+    private final DatabaseReference latestRef;
+    private final SharedPreferences prefs;
+    private final String prefsKey;
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+    private volatile String occupant;
+    private ValueEventListener remoteListener;
+
+    public FirebaseOccupancyCache(Context context, FirebaseDatabase database, String lab) {
+        this.latestRef = database.getReference(lab).child("Latest");
+        this.prefs = context.getApplicationContext().getSharedPreferences(PREFS, Context.MODE_PRIVATE);
+        this.prefsKey = lab;
+        this.occupant = prefs.getString(prefsKey, null);
+        Log.d(TAG, "Seeded " + lab + " occupant from local state: " + occupant);
+    }
+
+    @Nullable
+    @Override
+    public String getOccupant() {
+        return occupant;
+    }
+
+    @Override
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    @Override
+    public void removeListener(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    @Override
+    public synchronized void start() {
+        if (remoteListener != null) return;
+        remoteListener = new ValueEventListener() {
+            @Override
+            public void onDataChange(@NonNull DataSnapshot snapshot) {
+                String newOccupant = null;
+                if (snapshot.exists()) {
+                    String facultyStatus = snapshot.child("facultyStatus").getValue(String.class);
+                    String facultyName = snapshot.child("facultyName").getValue(String.class);
+                    if (isOccupiedStatus(facultyStatus)) newOccupant = facultyName;
+                }
+                setOccupant(newOccupant);
+            }
+
+            @Override
+            public void onCancelled(@NonNull DatabaseError error) {
+                // Keep the last known value; it is still the best information we have
+                Log.e(TAG, "Occupancy listener cancelled", error.toException());
+            }
+        };
+        latestRef.addValueEventListener(remoteListener);
+    }
+
+    @Override
+    public synchronized void stop() {
+        if (remoteListener != null) {
+            latestRef.removeEventListener(remoteListener);
+            remoteListener = null;
+        }
+    }
+
+    private void setOccupant(@Nullable String newOccupant) {
+        if (TextUtils.equals(occupant, newOccupant)) return;
+        occupant = newOccupant;
+        prefs.edit().putString(prefsKey, newOccupant).apply();
+        Log.d(TAG, "Occupant changed: " + newOccupant);
+        for (Listener l : listeners) l.onOccupancyChanged(newOccupant);
+    }
+
+    // A faculty holds the room while in class or on a break
+    static boolean isOccupiedStatus(@Nullable String facultyStatus) {
+        return "In Class".equals(facultyStatus) || "Break".equals(facultyStatus);
+    }
+}
@@ -0,0 +1,168 @@
+package com.sd.facultyfacialrecognition;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Reduces one faculty's embeddings to at most k representatives.
+ *
+ * Outliers (far from the person's own medoid) and near-duplicates are dropped first, then
+ * k-medoids picks the representatives from what remains, so the pose and lighting spread is
+ * kept while repeated imports of the same shot stop growing the gallery.
+ */
+public class GalleryPruner {
+
+    // Samples closer than this to an already kept one add nothing
+    private static final float DUPLICATE_DISTANCE = 0.15f;
+    // Samples farther than this from the medoid (and unusual by MAD) are treated as bad crops
+    private static final float OUTLIER_DISTANCE = 1.10f;
+    private static final float OUTLIER_MADS = 3f;
+    private static final int MAX_ITERATIONS = 10;
+
+    public static class Result {
+        public final List<float[]> kept = new ArrayList<>();
+        public int input;
+        public int outliers;
+        public int duplicates;
+        public int merged;
+
+        public int removed() {
+            return input - kept.size();
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.US, "kept %d of %d (outliers %d, duplicates %d, merged %d)",
+                    kept.size(), input, outliers, duplicates, merged);
+        }
+    }
+
+    public static Result prune(List<float[]> embeddings, int k) {
+        Result result = new Result();
+        result.input = embeddings.size();
+        if (embeddings.isEmpty()) return result;
+
+        int n = embeddings.size();
+        float[][] dist = new float[n][n];
+        for (int i = 0; i < n; i++) {
+            for (int j = i + 1; j < n; j++) {
+                dist[i][j] = dist[j][i] = FaceNet.distance(embeddings.get(i), embeddings.get(j));
+            }
+        }
+
+        // 1. Outliers: distance to the medoid of all samples, judged against its median and MAD
+        boolean[] alive = new boolean[n];
+        Arrays.fill(alive, true);
+        if (n > 2) {
+            int medoid = medoidOf(dist, allIndices(n));
+            float[] d = dist[medoid].clone();
+            float median = median(d);
+            float[] dev = new float[n];
+            for (int i = 0; i < n; i++) dev[i] = Math.abs(d[i] - median);
+            float mad = median(dev);
+            for (int i = 0; i < n; i++) {
+                if (dist[medoid][i] > OUTLIER_DISTANCE && dist[medoid][i] > median + OUTLIER_MADS * mad) {
+                    alive[i] = false;
+                    result.outliers++;
+                }
+            }
+        }
+
+        // 2. Near-duplicates, first one wins
+        List<Integer> candidates = new ArrayList<>();
+        for (int i = 0; i < n; i++) {
+            if (!alive[i]) continue;
+            boolean duplicate = false;
+            for (int c : candidates) {
+                if (dist[i][c] < DUPLICATE_DISTANCE) {
+                    duplicate = true;
+                    break;
+                }
+            }
+            if (duplicate) result.duplicates++;
+            else candidates.add(i);
+        }
+
+        // 3. k-medoids over the remaining samples
+        List<Integer> medoids = candidates.size() <= k ? candidates : kMedoids(dist, candidates, k);
+        result.merged = candidates.size() - medoids.size();
+        for (int m : medoids) result.kept.add(embeddings.get(m));
+        return result;
+    }
+
+    // Farthest-first seeding, then alternate assignment and per-cluster medoid updates
+    private static List<Integer> kMedoids(float[][] dist, List<Integer> points, int k) {
+        List<Integer> medoids = new ArrayList<>();
+        medoids.add(medoidOf(dist, points));
+        while (medoids.size() < k) {
+            int farthest = -1;
+            float farthestDist = -1f;
+            for (int p : points) {
+                float d = nearest(dist, p, medoids);
+                if (d > farthestDist) {
+                    farthestDist = d;
+                    farthest = p;
+                }
+            }
+            medoids.add(farthest);
+        }
+
+        for (int iter = 0; iter < MAX_ITERATIONS; iter++) {
+            List<List<Integer>> clusters = new ArrayList<>();
+            for (int c = 0; c < k; c++) clusters.add(new ArrayList<>());
+            for (int p : points) {
+                int best = 0;
+                for (int c = 1; c < k; c++) {
+                    if (dist[p][medoids.get(c)] < dist[p][medoids.get(best)]) best = c;
+                }
+                clusters.get(best).add(p);
+            }
+
+            boolean changed = false;
+            for (int c = 0; c < k; c++) {
+                if (clusters.get(c).isEmpty()) continue;
+                int m = medoidOf(dist, clusters.get(c));
+                if (m != medoids.get(c)) {
+                    medoids.set(c, m);
+                    changed = true;
+                }
+            }
+            if (!changed) break;
+        }
+        return medoids;
+    }
+
+    private static int medoidOf(float[][] dist, List<Integer> points) {
+        int best = points.get(0);
+        float bestSum = Float.MAX_VALUE;
+        for (int p : points) {
+            float sum = 0f;
+            for (int q : points) sum += dist[p][q];
+            if (sum < bestSum) {
+                bestSum = sum;
+                best = p;
+            }
+        }
+        return best;
+    }
+
+    private static float nearest(float[][] dist, int p, List<Integer> medoids) {
+        float min = Float.MAX_VALUE;
+        for (int m : medoids) min = Math.min(min, dist[p][m]);
+        return min;
+    }
+
+    private static List<Integer> allIndices(int n) {
+        List<Integer> all = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) all.add(i);
+        return all;
+    }
+
+    private static float median(float[] values) {
+        float[] copy = values.clone();
+        Arrays.sort(copy);
+        return copy[copy.length / 2];
+    }
+}
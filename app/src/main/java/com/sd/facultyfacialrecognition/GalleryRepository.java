@@ -0,0 +1,213 @@
+package com.sd.facultyfacialrecognition;
+
+import android.content.Context;
+import android.os.Environment;
+import android.os.FileObserver;
+import android.util.Log;
+
+import java.io.File;
+import java.time.LocalDateTime;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Process-wide holder of the current {@link FaceGallery} snapshot.
+ *
+ * Recognition reads {@link #current()} once per frame and never blocks. When the gallery store
+ * changes (admin enrolls or deletes someone) a new snapshot is built on a background thread and
+ * swapped in atomically, so the kiosk picks up the new gallery between two frames.
+ *
+ * A stored gallery that exists but is refused (built with another model, wrong embedding size,
+ * unreadable) is not papered over with the bundled one: recognition gets an empty gallery and
+ * {@link #isStoreRefused()} tells the UI to ask for regenerated embeddings. Only when there is no
+ * stored gallery at all are the bundled embeddings used.
+ *
+ * With a lab set, the snapshot also carries a hot tier of the faculty scheduled there now and
+ * next (from {@link LabSchedule}); it is recomputed every minute as the day advances, and the
+ * timetable is re-read whenever timetable.json is replaced.
+ */
+public class GalleryRepository {
+    private static final String TAG = "GalleryRepository";
+
+    private static GalleryRepository instance;
+
+    private final Context appContext;
+    private final File galleryDir;
+    private final GalleryStore store;
+    private final AtomicReference<FaceGallery> current;
+    private final ScheduledExecutorService reloadExecutor = Executors.newSingleThreadScheduledExecutor();
+    private final AtomicBoolean reloadPending = new AtomicBoolean(false);
+
+    private volatile FaceMatcher.Mode mode = FaceMatcher.Mode.KNN;
+    private volatile EmbeddingModel.Spec model = EmbeddingModel.ACTIVE;
+    private FileObserver observer;
+    private FileObserver scheduleObserver;
+    private volatile boolean storeRefused;
+
+    private static final long HOT_TIER_REFRESH_MINUTES = 1;
+    private volatile String lab;
+    private volatile LabSchedule schedule = LabSchedule.empty();
+    private ScheduledFuture<?> hotTierRefresh;
+
+    public static synchronized GalleryRepository getInstance(Context context) {
+        if (instance == null) {
+            instance = new GalleryRepository(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    /** Called by the admin flow after it changes the gallery. No-op if nobody loaded it yet. */
+    public static void notifyGalleryChanged() {
+        GalleryRepository repo;
+        synchronized (GalleryRepository.class) {
+            repo = instance;
+        }
+        if (repo != null) repo.reloadAsync();
+    }
+
+    private GalleryRepository(Context appContext) {
+        this.appContext = appContext;
+        this.galleryDir = new File(appContext.getExternalFilesDir(Environment.DIRECTORY_PICTURES), "FacultyPhotos");
+        this.store = new GalleryStore(galleryDir);
+        this.current = new AtomicReference<>(FaceGallery.empty(mode, model));
+    }
+
+    public FaceGallery current() {
+        return current.get();
+    }
+
+    public File getGalleryDir() {
+        return galleryDir;
+    }
+
+    public GalleryStore getStore() {
+        return store;
+    }
+
+    /**
+     * Enables the schedule-driven hot tier for lab. The timetable is read from the app's external
+     * files directory; the hot tier is refreshed every minute.
+     */
+    public synchronized void setLab(String lab) {
+        this.lab = lab;
+        this.schedule = LabSchedule.load(scheduleFile());
+        current.set(withHotTier(current.get()));
+        if (hotTierRefresh == null) {
+            hotTierRefresh = reloadExecutor.scheduleWithFixedDelay(this::refreshHotTier,
+                    HOT_TIER_REFRESH_MINUTES, HOT_TIER_REFRESH_MINUTES, TimeUnit.MINUTES);
+        }
+    }
+
+    private File scheduleFile() {
+        return new File(appContext.getExternalFilesDir(null), LabSchedule.FILE_NAME);
+    }
+
+    // The timetable was edited or replaced; re-read it and recompute the hot tier
+    private void reloadSchedule() {
+        reloadExecutor.execute(() -> {
+            schedule = LabSchedule.load(scheduleFile());
+            refreshHotTier();
+        });
+    }
+
+    // Swaps in a new snapshot only when the scheduled set actually changed
+    private void refreshHotTier() {
+        FaceGallery gallery = current.get();
+        FaceGallery updated = withHotTier(gallery);
+        if (!updated.getHotNames().equals(gallery.getHotNames())) {
+            current.compareAndSet(gallery, updated);
+            Log.d(TAG, "Hot tier now: " + updated.getHotNames());
+        }
+    }
+
+    private FaceGallery withHotTier(FaceGallery gallery) {
+        String lab = this.lab;
+        if (lab == null) return gallery;
+        return gallery.withHotTier(schedule.currentAndNext(lab, LocalDateTime.now()));
+    }
+
+    /** Blocking load, used once at startup before the camera runs. Only model's embeddings are accepted. */
+    public FaceGallery load(FaceMatcher.Mode mode, EmbeddingModel.Spec model) {
+        this.mode = mode;
+        this.model = model;
+        FaceGallery gallery = build();
+        current.set(gallery);
+        return gallery;
+    }
+
+    /** Coalesces bursts of file events into a single rebuild. */
+    public void reloadAsync() {
+        if (!reloadPending.compareAndSet(false, true)) return;
+        reloadExecutor.execute(() -> {
+            reloadPending.set(false);
+            FaceGallery gallery = build();
+            current.set(gallery);
+            Log.d(TAG, "Gallery reloaded: " + gallery.size() + " identities");
+        });
+    }
+
+    /** Whether the last build found a stored gallery but could not use it. */
+    public boolean isStoreRefused() {
+        return storeRefused;
+    }
+
+    private FaceGallery build() {
+        FaceGallery gallery;
+        if (store.exists()) {
+            gallery = FaceGallery.fromStore(store, mode, model);
+            storeRefused = gallery == null;
+            if (storeRefused) {
+                Log.e(TAG, "Stored gallery refused for " + model + "; serving an empty gallery until embeddings are regenerated");
+            }
+        } else {
+            // Nothing enrolled on this device yet: fall back to assets
+            storeRefused = false;
+            gallery = FaceGallery.fromAssets(appContext, mode, model);
+        }
+        return withHotTier(gallery != null ? gallery : FaceGallery.empty(mode, model));
+    }
+
+    public synchronized void startWatching() {
+        if (observer != null) return;
+        galleryDir.mkdirs();
+
+        observer = new FileObserver(galleryDir.getAbsolutePath(),
+                FileObserver.CLOSE_WRITE | FileObserver.MOVED_TO | FileObserver.DELETE) {
+            @Override
+            public void onEvent(int event, String path) {
+                if (GalleryStore.BASE_FILE.equals(path) || GalleryStore.JOURNAL_FILE.equals(path)
+                        || GalleryStore.ADAPTED_FILE.equals(path)
+                        || GalleryStore.META_FILE.equals(path)) {
+                    reloadAsync();
+                }
+            }
+        };
+        observer.startWatching();
+
+        File scheduleDir = scheduleFile().getParentFile();
+        if (scheduleDir == null) return;
+        scheduleObserver = new FileObserver(scheduleDir.getAbsolutePath(),
+                FileObserver.CLOSE_WRITE | FileObserver.MOVED_TO | FileObserver.DELETE) {
+            @Override
+            public void onEvent(int event, String path) {
+                if (LabSchedule.FILE_NAME.equals(path)) reloadSchedule();
+            }
+        };
+        scheduleObserver.startWatching();
+    }
+
+    public synchronized void stopWatching() {
+        if (observer != null) {
+            observer.stopWatching();
+            observer = null;
+        }
+        if (scheduleObserver != null) {
+            scheduleObserver.stopWatching();
+            scheduleObserver = null;
+        }
+    }
+}
@@ -0,0 +1,298 @@
+package com.sd.facultyfacialrecognition;
+
+import android.util.Log;
+
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * On-disk gallery: embeddings.json as the base snapshot plus an append-only journal.
+ *
+ * Deleting a faculty appends one tombstone line to the journal instead of rewriting the
+ * whole file. Full writes go to a temp file that is fsynced and renamed over the base, so a
+ * crash leaves either the old or the new gallery, never a half-written one. Once the journal
+ * grows past {@link #COMPACT_THRESHOLD} entries it is folded into a new base.
+ *
+ * Journal entries remember which base they were written against, so entries left over from a
+ * crash between a rename and the journal cleanup are never replayed onto a newer base.
+ *
+ * A small sidecar (embeddings.meta.json) records which embedding model produced the gallery.
+ * Galleries written before it existed have no sidecar and are treated as FaceNet.
+ *
+ * Templates adapted online from confirmed unlocks live next to the enrollment samples, never
+ * mixed into them: each update is one PUT line in the journal, folded into
+ * embeddings.adapted.json on compaction. PUTs carry the whole template, so replaying one
+ * twice is harmless. Regenerating the gallery drops them.
+ */
+public class GalleryStore {
+    private static final String TAG = "GalleryStore";
+
+    public static final String BASE_FILE = "embeddings.json";
+    public static final String JOURNAL_FILE = "embeddings.journal";
+    public static final String META_FILE = "embeddings.meta.json";
+    private static final String TEMP_FILE = "embeddings.json.tmp";
+    private static final String META_TEMP_FILE = "embeddings.meta.json.tmp";
+    public static final String ADAPTED_FILE = "embeddings.adapted.json";
+    private static final String ADAPTED_TEMP_FILE = "embeddings.adapted.json.tmp";
+    private static final int COMPACT_THRESHOLD = 32;
+
+    static final String OP_DELETE = "DEL";
+    static final String OP_PUT_TEMPLATE = "PUT";
+
+    private final File dir;
+    private final File baseFile;
+    private final File journalFile;
+    private final File metaFile;
+    private final File adaptedFile;
+    private final Gson gson = new Gson();
+
+    public GalleryStore(File dir) {
+        this.dir = dir;
+        this.baseFile = new File(dir, BASE_FILE);
+        this.journalFile = new File(dir, JOURNAL_FILE);
+        this.metaFile = new File(dir, META_FILE);
+        this.adaptedFile = new File(dir, ADAPTED_FILE);
+    }
+
+    public boolean exists() {
+        return baseFile.exists();
+    }
+
+    /** Base snapshot with all journal entries applied. Returns null if there is no gallery yet. */
+    public synchronized Map<String, List<float[]>> readAll() throws Exception {
+        if (!baseFile.exists()) return null;
+
+        String jsonStr = new String(java.nio.file.Files.readAllBytes(baseFile.toPath()), StandardCharsets.UTF_8);
+        JSONObject jsonObj = new JSONObject(jsonStr);
+
+        Map<String, List<float[]>> all = new HashMap<>();
+        Iterator<String> keys = jsonObj.keys();
+        while (keys.hasNext()) {
+            String facultyName = keys.next();
+            JSONArray embeddingsArray = jsonObj.getJSONArray(facultyName);
+
+            List<float[]> embeddings = new ArrayList<>();
+            for (int i = 0; i < embeddingsArray.length(); i++) {
+                JSONArray arr = embeddingsArray.getJSONArray(i);
+                float[] emb = new float[arr.length()];
+                for (int j = 0; j < arr.length(); j++) {
+                    emb[j] = (float) arr.getDouble(j);
+                }
+                embeddings.add(emb);
+            }
+            all.put(facultyName, embeddings);
+        }
+
+        for (JournalEntry entry : readJournal()) apply(all, entry);
+        return all;
+    }
+
+    /** Tombstones one faculty with a single small append; the base file is not touched. */
+    public synchronized void delete(String facultyName) throws IOException {
+        JournalEntry entry = new JournalEntry();
+        entry.op = OP_DELETE;
+        entry.name = facultyName;
+        append(entry);
+    }
+
+    /** Records the adapted template of one faculty with a single small append. */
+    public synchronized void putAdaptation(String facultyName, Adaptation adaptation) throws IOException {
+        JournalEntry entry = new JournalEntry();
+        entry.op = OP_PUT_TEMPLATE;
+        entry.name = facultyName;
+        entry.embedding = adaptation.embedding;
+        entry.weight = adaptation.weight;
+        entry.updatedAt = adaptation.updatedAt;
+        append(entry);
+    }
+
+    /** Adapted templates by faculty, with journal entries applied. Empty if there are none. */
+    public synchronized Map<String, Adaptation> readAdaptations() {
+        Map<String, Adaptation> adapted = new HashMap<>();
+        if (adaptedFile.exists()) {
+            try {
+                String json = new String(java.nio.file.Files.readAllBytes(adaptedFile.toPath()), StandardCharsets.UTF_8);
+                Map<String, Adaptation> stored = gson.fromJson(json, new TypeToken<Map<String, Adaptation>>() {}.getType());
+                if (stored != null) adapted.putAll(stored);
+            } catch (Exception e) {
+                Log.e(TAG, "Error reading " + ADAPTED_FILE, e);
+            }
+        }
+
+        for (JournalEntry entry : readJournal()) {
+            if (OP_DELETE.equals(entry.op)) {
+                adapted.remove(entry.name);
+            } else if (OP_PUT_TEMPLATE.equals(entry.op) && entry.embedding != null) {
+                Adaptation a = new Adaptation();
+                a.embedding = entry.embedding;
+                a.weight = entry.weight;
+                a.updatedAt = entry.updatedAt;
+                adapted.put(entry.name, a);
+            }
+        }
+        return adapted;
+    }
+
+    /**
+     * Atomically replaces the whole gallery with embeddings from model, and clears the journal.
+     * This is a fresh enrollment, so adapted templates are dropped: neither the adapted file nor
+     * the journal's PUT entries are carried over.
+     */
+    public synchronized void writeAll(Map<String, List<float[]>> all, EmbeddingModel.Spec model) throws IOException {
+        adaptedFile.delete();
+        writeAtomically(new File(dir, TEMP_FILE), baseFile, all);
+        // Entries are tagged with the old base, so a crash before this delete is harmless
+        journalFile.delete();
+
+        // Base first: a crash before this leaves a record that doesn't match the base, which is
+        // refused on load instead of being trusted
+        ModelInfo info = new ModelInfo();
+        info.model = model.name;
+        info.dimension = model.embeddingSize;
+        writeAtomically(new File(dir, META_TEMP_FILE), metaFile, info);
+    }
+
+    /**
+     * Atomically replaces the whole gallery and clears the journal; the model record and the
+     * adapted templates of faculty still present are kept.
+     */
+    public synchronized void writeAll(Map<String, List<float[]>> all) throws IOException {
+        Map<String, Adaptation> adapted = readAdaptations();
+        adapted.keySet().retainAll(all.keySet());
+        if (!adapted.isEmpty()) {
+            writeAtomically(new File(dir, ADAPTED_TEMP_FILE), adaptedFile, adapted);
+        } else {
+            adaptedFile.delete();
+        }
+        writeAtomically(new File(dir, TEMP_FILE), baseFile, all);
+        // Entries are tagged with the old base, so a crash before this delete is harmless
+        journalFile.delete();
+    }
+
+    /** Which model produced the stored gallery; FaceNet for galleries without a record. */
+    public synchronized ModelInfo readModelInfo() {
+        if (metaFile.exists()) {
+            try {
+                String json = new String(java.nio.file.Files.readAllBytes(metaFile.toPath()), StandardCharsets.UTF_8);
+                ModelInfo info = gson.fromJson(json, ModelInfo.class);
+                if (info != null && info.model != null) return info;
+            } catch (Exception e) {
+                Log.e(TAG, "Error reading " + META_FILE, e);
+            }
+        }
+        ModelInfo legacy = new ModelInfo();
+        legacy.model = EmbeddingModel.Spec.FACENET.name;
+        legacy.dimension = EmbeddingModel.Spec.FACENET.embeddingSize;
+        return legacy;
+    }
+
+    private void writeAtomically(File tmp, File target, Object value) throws IOException {
+        dir.mkdirs();
+        try (FileOutputStream fos = new FileOutputStream(tmp)) {
+            Writer writer = new OutputStreamWriter(fos, StandardCharsets.UTF_8);
+            gson.toJson(value, writer);
+            writer.flush();
+            fos.getFD().sync();
+        }
+        if (!tmp.renameTo(target)) {
+            tmp.delete();
+            throw new IOException("Could not commit " + target.getName());
+        }
+    }
+
+    public synchronized boolean needsCompaction() {
+        return readJournal().size() >= COMPACT_THRESHOLD;
+    }
+
+    /** Folds the journal into a new base snapshot. */
+    public synchronized void compact() throws Exception {
+        Map<String, List<float[]>> all = readAll();
+        if (all == null) return;
+        writeAll(all);
+        Log.d(TAG, "Gallery compacted: " + all.size() + " identities");
+    }
+
+    void append(JournalEntry entry) throws IOException {
+        dir.mkdirs();
+        entry.base = baseFingerprint();
+        try (FileOutputStream fos = new FileOutputStream(journalFile, true)) {
+            fos.write((gson.toJson(entry) + "\n").getBytes(StandardCharsets.UTF_8));
+            fos.getFD().sync();
+        }
+    }
+
+    private List<JournalEntry> readJournal() {
+        List<JournalEntry> entries = new ArrayList<>();
+        if (!journalFile.exists()) return entries;
+
+        String base = baseFingerprint();
+        try (BufferedReader reader = new BufferedReader(new FileReader(journalFile))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.trim().isEmpty()) continue;
+                try {
+                    JournalEntry entry = gson.fromJson(line, JournalEntry.class);
+                    if (entry != null && base.equals(entry.base)) entries.add(entry);
+                } catch (Exception e) {
+                    // A torn last line from a crash mid-append; everything before it is intact
+                    Log.w(TAG, "Skipping unreadable journal line");
+                }
+            }
+        } catch (IOException e) {
+            Log.e(TAG, "Error reading journal", e);
+        }
+        return entries;
+    }
+
+    void apply(Map<String, List<float[]>> all, JournalEntry entry) {
+        if (OP_DELETE.equals(entry.op)) {
+            all.remove(entry.name);
+        }
+    }
+
+    private String baseFingerprint() {
+        return baseFile.exists() ? baseFile.length() + ":" + baseFile.lastModified() : "none";
+    }
+
+    /** Running-mean template built from confirmed sessions; weight is the number of faces it stands for. */
+    public static class Adaptation {
+        public float[] embedding;
+        public int weight;
+        public long updatedAt;
+    }
+
+    public static class ModelInfo {
+        public String model;
+        public int dimension;
+
+        public boolean matches(EmbeddingModel.Spec spec) {
+            return spec.name.equals(model) && spec.embeddingSize == dimension;
+        }
+    }
+
+    static class JournalEntry {
+        String op;
+        String name;
+        String base;
+        float[] embedding;
+        int weight;
+        long updatedAt;
+    }
+}
@@ -1,9 +1,13 @@
 package com.sd.facultyfacialrecognition;
 
 import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
 import android.graphics.Matrix;
+import android.graphics.Paint;
 import android.graphics.PointF;
 import android.graphics.Rect;
+import android.graphics.RectF;
 import android.util.Log;
 
 public class ImageAligner {
@@ -11,6 +15,9 @@ public class ImageAligner {
     private static final int TARGET_SIZE = 160;
     private static final float PADDING_FACTOR = 0.15f;
 
+    private final Paint filterPaint = new Paint(Paint.FILTER_BITMAP_FLAG);
+
+    /** Returns a pooled bitmap; release it with {@link BitmapPool#release} after use. */
     public Bitmap alignAndCropFace(Bitmap fullBmp, Rect box, PointF leftEye, PointF rightEye) {
         if (fullBmp == null || box == null) return null;
 
@@ -27,45 +34,42 @@ public class ImageAligner {
 
         if (cropWidth <= 0 || cropHeight <= 0) return null;
 
-        Bitmap croppedBmp;
-        try {
-            croppedBmp = Bitmap.createBitmap(fullBmp, left, top, cropWidth, cropHeight);
-        } catch (IllegalArgumentException e) {
-            Log.e(TAG, "Crop failed: " + e.getMessage());
-            return null;
-        }
+        // Crop and de-rotate in a single draw into a pooled bitmap instead of two full copies
+        Rect src = new Rect(left, top, right, bottom);
+        RectF dst = new RectF(0, 0, cropWidth, cropHeight);
+        Matrix matrix = new Matrix();
 
         if (leftEye != null && rightEye != null) {
-            try {
-                float leftEyeX = leftEye.x - left;
-                float leftEyeY = leftEye.y - top;
-                float rightEyeX = rightEye.x - left;
-                float rightEyeY = rightEye.y - top;
-
-                float dy = rightEyeY - leftEyeY;
-                float dx = rightEyeX - leftEyeX;
-                float angle = (float) Math.toDegrees(Math.atan2(dy, dx));
+            float leftEyeX = leftEye.x - left;
+            float leftEyeY = leftEye.y - top;
+            float rightEyeX = rightEye.x - left;
+            float rightEyeY = rightEye.y - top;
 
-                float centerX = croppedBmp.getWidth() / 2f;
-                float centerY = croppedBmp.getHeight() / 2f;
+            float dy = rightEyeY - leftEyeY;
+            float dx = rightEyeX - leftEyeX;
+            float angle = (float) Math.toDegrees(Math.atan2(dy, dx));
 
-                Matrix matrix = new Matrix();
-                matrix.postRotate(angle, centerX, centerY);
-
-                Bitmap alignedBmp = Bitmap.createBitmap(
-                        croppedBmp, 0, 0, croppedBmp.getWidth(), croppedBmp.getHeight(), matrix, true);
+            matrix.postRotate(angle, cropWidth / 2f, cropHeight / 2f);
+        }
 
-                if (croppedBmp != alignedBmp) {
-                    croppedBmp.recycle();
-                }
-                return alignedBmp;
+        // Same bounds Bitmap.createBitmap(src, matrix) would produce, stretched straight to the
+        // FaceNet input size so every frame reuses one pooled TARGET_SIZE bitmap
+        RectF bounds = new RectF(dst);
+        matrix.mapRect(bounds);
+        if (bounds.width() <= 0 || bounds.height() <= 0) return null;
+        matrix.postTranslate(-bounds.left, -bounds.top);
+        matrix.postScale(TARGET_SIZE / bounds.width(), TARGET_SIZE / bounds.height());
 
-            } catch (Exception e) {
-                Log.e(TAG, "Alignment failed: " + e.getMessage());
-                return croppedBmp;
-            }
+        try {
+            Bitmap alignedBmp = BitmapPool.acquire(TARGET_SIZE, TARGET_SIZE);
+            alignedBmp.eraseColor(Color.TRANSPARENT);
+            Canvas canvas = new Canvas(alignedBmp);
+            canvas.concat(matrix);
+            canvas.drawBitmap(fullBmp, src, dst, filterPaint);
+            return alignedBmp;
+        } catch (Exception e) {
+            Log.e(TAG, "Alignment failed: " + e.getMessage());
+            return null;
         }
-
-        return croppedBmp;
     }
 }
\ No newline at end of file
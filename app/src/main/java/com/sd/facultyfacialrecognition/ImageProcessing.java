@@ -5,11 +5,17 @@ import android.content.ContentResolver;
 import android.content.Context;
 import android.graphics.Bitmap;
 import android.graphics.BitmapFactory;
+import android.graphics.Canvas;
+import android.graphics.Color;
 import android.graphics.Matrix;
+import android.graphics.Paint;
+import android.graphics.Rect;
 import android.media.ExifInterface;
 import android.net.Uri;
 import android.util.Log;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.InputStream;
 
 public class ImageProcessing {
@@ -47,7 +53,59 @@ public class ImageProcessing {
         }
     }
 
-    // EXIF orientation correction
+    // Opens the source once, then reads EXIF, bounds and pixels from the same in-memory copy
+    public static Bitmap loadUprightBitmapFromUri(Context ctx, Uri uri, int maxDim) {
+        byte[] bytes = readBytes(ctx, uri);
+        if (bytes == null) return null;
+        return decodeUpright(bytes, maxDim);
+    }
+
+    public static byte[] readBytes(Context ctx, Uri uri) {
+        try (InputStream is = ctx.getContentResolver().openInputStream(uri)) {
+            if (is == null) return null;
+            ByteArrayOutputStream out = new ByteArrayOutputStream(256 * 1024);
+            byte[] buffer = new byte[16 * 1024];
+            int read;
+            while ((read = is.read(buffer)) != -1) out.write(buffer, 0, read);
+            return out.toByteArray();
+        } catch (Exception e) {
+            Log.e("ImageProcessing", "readBytes err: " + e.getMessage());
+            return null;
+        }
+    }
+
+    public static Bitmap decodeUpright(byte[] bytes, int maxDim) {
+        try {
+            BitmapFactory.Options o = new BitmapFactory.Options();
+            o.inJustDecodeBounds = true;
+            BitmapFactory.decodeByteArray(bytes, 0, bytes.length, o);
+            if (o.outWidth <= 0 || o.outHeight <= 0) return null;
+
+            int inSampleSize = 1;
+            while ((o.outWidth / inSampleSize) > maxDim || (o.outHeight / inSampleSize) > maxDim) {
+                inSampleSize *= 2;
+            }
+
+            BitmapFactory.Options opts = new BitmapFactory.Options();
+            opts.inSampleSize = inSampleSize;
+            Bitmap bm = BitmapFactory.decodeByteArray(bytes, 0, bytes.length, opts);
+            if (bm == null) return null;
+
+            int rotationDegrees = 0;
+            try (InputStream in = new ByteArrayInputStream(bytes)) {
+                ExifInterface exif = new ExifInterface(in);
+                rotationDegrees = exifToDegrees(exif.getAttributeInt(ExifInterface.TAG_ORIENTATION, ExifInterface.ORIENTATION_NORMAL));
+            } catch (Exception ignored) {
+                // no EXIF: keep as decoded
+            }
+            return rotationDegrees == 0 ? bm : rotate(bm, rotationDegrees);
+        } catch (Exception e) {
+            Log.e("ImageProcessing", "decodeUpright err: " + e.getMessage());
+            return null;
+        }
+    }
+
+    // EXIF orientation correction. When a rotated copy is returned, img is released to the pool.
     public static Bitmap rotateBitmapIfRequired(Context ctx, Uri uri, Bitmap img) {
         try {
             InputStream in = ctx.getContentResolver().openInputStream(uri);
@@ -57,16 +115,31 @@ public class ImageProcessing {
             int rotationDegrees = exifToDegrees(orientation);
             if (rotationDegrees == 0) return img;
 
-            Matrix matrix = new Matrix();
-            matrix.postRotate(rotationDegrees);
-            Bitmap rotated = Bitmap.createBitmap(img, 0, 0, img.getWidth(), img.getHeight(), matrix, true);
-            return rotated;
+            return rotate(img, rotationDegrees);
         } catch (Exception e) {
             // fallback: return original
             return img;
         }
     }
 
+    // Right-angle rotation into a pooled bitmap; the source is released
+    static Bitmap rotate(Bitmap img, int rotationDegrees) {
+        boolean swap = rotationDegrees == 90 || rotationDegrees == 270;
+        int outW = swap ? img.getHeight() : img.getWidth();
+        int outH = swap ? img.getWidth() : img.getHeight();
+
+        Matrix matrix = new Matrix();
+        matrix.setRotate(rotationDegrees);
+        if (rotationDegrees == 90) matrix.postTranslate(outW, 0);
+        else if (rotationDegrees == 180) matrix.postTranslate(outW, outH);
+        else if (rotationDegrees == 270) matrix.postTranslate(0, outH);
+
+        Bitmap rotated = BitmapPool.acquire(outW, outH);
+        new Canvas(rotated).drawBitmap(img, matrix, new Paint(Paint.FILTER_BITMAP_FLAG));
+        BitmapPool.release(img);
+        return rotated;
+    }
+
     private static int exifToDegrees(int exifOrientation) {
         if (exifOrientation == ExifInterface.ORIENTATION_ROTATE_90) { return 90; }
         if (exifOrientation == ExifInterface.ORIENTATION_ROTATE_180) { return 180; }
@@ -74,10 +147,17 @@ public class ImageProcessing {
         return 0;
     }
 
-    // Simple blur detection: variance of Laplacian approximation using downscale + edges
+    // Blur detection through the shared quality scorer (luma once, single Laplacian pass)
     public static boolean isBlurry(Bitmap bmp) {
+        if (bmp == null) return true;
+        return FaceQuality.get().score(bmp, 0).isBlurry();
+    }
+
+    // Previous blur measure, kept for FaceQuality.benchmark: variance of a Laplacian
+    // approximation using downscale + edges; the old check called variance < 15 blurry
+    static double blurVarianceLegacy(Bitmap bmp) {
         try {
-            if (bmp == null) return true;
+            if (bmp == null) return 0;
             // resize to speed up
             Bitmap small = Bitmap.createScaledBitmap(bmp, 200, 200 * bmp.getHeight() / bmp.getWidth(), true);
             int width = small.getWidth(), height = small.getHeight();
@@ -115,21 +195,23 @@ public class ImageProcessing {
                     count++;
                 }
             }
-            if (count == 0) return true;
+            if (small != bmp) small.recycle();
+            if (count == 0) return 0;
             double mean = (double) sum / count;
-            double variance = ((double) sumSq / count) - (mean * mean);
-
-            // threshold tuned experimentally; tweak if needed
-            return variance < 15.0;
+            return ((double) sumSq / count) - (mean * mean);
         } catch (Exception e) {
-            return true;
+            return 0;
         }
     }
 
-    // resize utility
+    // resize utility; the result is pooled unless bm already has the requested size
     public static Bitmap resize(Bitmap bm, int w, int h) {
+        if (bm.getWidth() == w && bm.getHeight() == h) return bm;
         try {
-            return Bitmap.createScaledBitmap(bm, w, h, true);
+            Bitmap out = BitmapPool.acquire(w, h);
+            out.eraseColor(Color.TRANSPARENT);
+            new Canvas(out).drawBitmap(bm, null, new Rect(0, 0, w, h), new Paint(Paint.FILTER_BITMAP_FLAG));
+            return out;
         } catch (Exception e) {
             return bm;
         }
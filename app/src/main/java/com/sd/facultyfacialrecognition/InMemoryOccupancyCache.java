@@ -0,0 +1,43 @@
+package com.sd.facultyfacialrecognition;
+
+import androidx.annotation.Nullable;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/** Local stand-in for {@link OccupancyCache}; the occupant only changes through {@link #setOccupant}. */
+public class InMemoryOccupancyCache implements OccupancyCache {
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+    private volatile String occupant;
+
+    public InMemoryOccupancyCache(@Nullable String occupant) {
+        this.occupant = occupant;
+    }
+
+    public void setOccupant(@Nullable String occupant) {
+        this.occupant = occupant;
+        for (Listener l : listeners) l.onOccupancyChanged(occupant);
+    }
+
+    @Nullable
+    @Override
+    public String getOccupant() {
+        return occupant;
+    }
+
+    @Override
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    @Override
+    public void removeListener(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    @Override
+    public void start() { }
+
+    @Override
+    public void stop() { }
+}
@@ -2,8 +2,9 @@ package com.sd.facultyfacialrecognition;
 
 import android.content.Context;
 import android.graphics.Bitmap;
-import android.graphics.ImageFormat;
+import android.graphics.Canvas;
 import android.graphics.Matrix;
+import android.graphics.Paint;
 import android.media.Image;
 import android.util.Log;
 
@@ -13,30 +14,106 @@ import java.nio.ByteBuffer;
 
 public class InputImageUtils {
 
+    private static YuvToRgbConverter converter;
+    private static ByteBuffer packed;
+    private static final Matrix rotateMatrix = new Matrix();
+    private static final Paint filterPaint = new Paint(Paint.FILTER_BITMAP_FLAG);
+
+    /**
+     * Returns an upright ARGB copy of the frame. The bitmap comes from {@link BitmapPool};
+     * hand it back with {@link BitmapPool#release} once the frame is done.
+     */
     public static Bitmap getBitmapFromInputImage(Context context, InputImage inputImage) {
         try {
             Bitmap bmp = inputImage.getBitmapInternal();
-            if (bmp != null) return bmp;
+            if (bmp != null) return bmp.copy(Bitmap.Config.ARGB_8888, true);
         } catch (Exception ignored) {}
 
         try {
             Image mediaImage = inputImage.getMediaImage();
             if (mediaImage == null) return null;
 
-            YuvToRgbConverter converter = new YuvToRgbConverter(context);
-            Bitmap bitmap = Bitmap.createBitmap(
-                    mediaImage.getWidth(), mediaImage.getHeight(), Bitmap.Config.ARGB_8888);
-            converter.yuvToRgb(mediaImage, bitmap);
-
-            Matrix matrix = new Matrix();
-            matrix.postRotate(inputImage.getRotationDegrees());
-            Bitmap rotated = Bitmap.createBitmap(bitmap, 0, 0,
-                    bitmap.getWidth(), bitmap.getHeight(), matrix, true);
+            Bitmap bitmap = BitmapPool.acquire(mediaImage.getWidth(), mediaImage.getHeight());
+            convert(context, mediaImage, bitmap);
 
-            return rotated;
+            return upright(bitmap, inputImage.getRotationDegrees());
         } catch (Exception e) {
             Log.e("InputImageUtils", "Error converting InputImage to Bitmap", e);
             return null;
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Upright copy of an RGBA_8888 analysis frame (CameraX already did the conversion).
+     * Pooled like {@link #getBitmapFromInputImage}.
+     */
+    public static Bitmap getBitmapFromRgbaImage(Image image, int rotationDegrees) {
+        try {
+            int width = image.getWidth();
+            int height = image.getHeight();
+            Image.Plane plane = image.getPlanes()[0];
+            ByteBuffer buffer = plane.getBuffer();
+            int rowStride = plane.getRowStride();
+            int rowBytes = width * 4;
+
+            Bitmap bitmap = BitmapPool.acquire(width, height);
+            buffer.rewind();
+            if (rowStride == rowBytes) {
+                bitmap.copyPixelsFromBuffer(buffer);
+            } else {
+                // Rows are padded; pack them first
+                synchronized (InputImageUtils.class) {
+                    if (packed == null || packed.capacity() < rowBytes * height) {
+                        packed = ByteBuffer.allocateDirect(rowBytes * height);
+                    }
+                    packed.clear();
+                    for (int row = 0; row < height; row++) {
+                        buffer.limit(row * rowStride + rowBytes);
+                        buffer.position(row * rowStride);
+                        packed.put(buffer);
+                    }
+                    buffer.clear();
+                    packed.flip();
+                    bitmap.copyPixelsFromBuffer(packed);
+                }
+            }
+            buffer.rewind();
+            return upright(bitmap, rotationDegrees);
+        } catch (Exception e) {
+            Log.e("InputImageUtils", "Error converting RGBA image to Bitmap", e);
+            return null;
+        }
+    }
+
+    // Rotates a pooled bitmap into a new pooled bitmap and releases the input
+    private static Bitmap upright(Bitmap bitmap, int rotation) {
+        if (rotation == 0) return bitmap;
+
+        boolean swap = rotation == 90 || rotation == 270;
+        int outW = swap ? bitmap.getHeight() : bitmap.getWidth();
+        int outH = swap ? bitmap.getWidth() : bitmap.getHeight();
+        Bitmap rotated = BitmapPool.acquire(outW, outH);
+
+        synchronized (rotateMatrix) {
+            // Rotate about the origin, then shift the result back into the positive quadrant
+            rotateMatrix.setRotate(rotation);
+            if (rotation == 90) rotateMatrix.postTranslate(outW, 0);
+            else if (rotation == 180) rotateMatrix.postTranslate(outW, outH);
+            else if (rotation == 270) rotateMatrix.postTranslate(0, outH);
+            new Canvas(rotated).drawBitmap(bitmap, rotateMatrix, filterPaint);
+        }
+        BitmapPool.release(bitmap);
+        return rotated;
+    }
+
+    // The converter caches RenderScript allocations sized to the first frame it sees; on a
+    // resolution change the old one is destroyed. Converting under the same lock keeps another
+    // thread from destroying a converter that is still in use.
+    private static synchronized void convert(Context context, Image image, Bitmap output) {
+        if (converter == null || !converter.matches(image.getWidth(), image.getHeight())) {
+            if (converter != null) converter.destroy();
+            converter = new YuvToRgbConverter(context.getApplicationContext());
+        }
+        converter.yuvToRgb(image, output);
+    }
+}
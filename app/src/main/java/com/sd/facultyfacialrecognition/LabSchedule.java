@@ -0,0 +1,111 @@
+package com.sd.facultyfacialrecognition;
+
+import android.util.Log;
+
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.time.DayOfWeek;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Weekly lab timetable read from a local JSON file (timetable.json in the app's external files
+ * directory), keyed by lab:
+ *
+ * <pre>
+ * { "CpeLab": [ { "faculty": "Juan Dela Cruz", "day": "MONDAY", "start": "08:00", "end": "10:30" } ] }
+ * </pre>
+ *
+ * Faculty names must match the gallery's folder names.
+ */
+public class LabSchedule {
+    private static final String TAG = "LabSchedule";
+    public static final String FILE_NAME = "timetable.json";
+
+    private final Map<String, List<Slot>> slotsByLab;
+
+    private LabSchedule(Map<String, List<Slot>> slotsByLab) {
+        this.slotsByLab = slotsByLab;
+    }
+
+    public static LabSchedule empty() {
+        return new LabSchedule(new HashMap<>());
+    }
+
+    /** Never null; a missing or unreadable file gives an empty schedule. */
+    public static LabSchedule load(File file) {
+        if (file == null || !file.exists()) {
+            Log.d(TAG, "No timetable at " + file);
+            return empty();
+        }
+        try {
+            String json = new String(java.nio.file.Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+            Map<String, List<Slot>> parsed = new Gson().fromJson(json,
+                    new TypeToken<Map<String, List<Slot>>>() {}.getType());
+            return new LabSchedule(parsed != null ? parsed : new HashMap<>());
+        } catch (Exception e) {
+            Log.e(TAG, "Error reading timetable", e);
+            return empty();
+        }
+    }
+
+    /** Faculty teaching in lab now, plus those in the next slot that starts later today. */
+    public Set<String> currentAndNext(String lab, LocalDateTime now) {
+        List<Slot> slots = slotsByLab.get(lab);
+        if (slots == null || slots.isEmpty()) return Collections.emptySet();
+
+        DayOfWeek today = now.getDayOfWeek();
+        LocalTime time = now.toLocalTime();
+        Set<String> faculty = new HashSet<>();
+        LocalTime nextStart = null;
+        List<Slot> todays = new ArrayList<>();
+
+        for (Slot slot : slots) {
+            if (!slot.isValid() || slot.dayOfWeek() != today) continue;
+            todays.add(slot);
+            LocalTime start = LocalTime.parse(slot.start);
+            LocalTime end = LocalTime.parse(slot.end);
+            if (!time.isBefore(start) && time.isBefore(end)) {
+                faculty.add(slot.faculty);
+            } else if (start.isAfter(time) && (nextStart == null || start.isBefore(nextStart))) {
+                nextStart = start;
+            }
+        }
+        if (nextStart != null) {
+            for (Slot slot : todays) {
+                if (LocalTime.parse(slot.start).equals(nextStart)) faculty.add(slot.faculty);
+            }
+        }
+        return faculty;
+    }
+
+    static class Slot {
+        String faculty;
+        String day;
+        String start;
+        String end;
+
+        boolean isValid() {
+            try {
+                return faculty != null && dayOfWeek() != null
+                        && LocalTime.parse(start) != null && LocalTime.parse(end) != null;
+            } catch (Exception e) {
+                return false;
+            }
+        }
+
+        DayOfWeek dayOfWeek() {
+            return day == null ? null : DayOfWeek.valueOf(day.trim().toUpperCase(java.util.Locale.US));
+        }
+    }
+}
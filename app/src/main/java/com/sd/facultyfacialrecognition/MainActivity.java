@@ -4,6 +4,7 @@ import android.content.ComponentName;
 import android.content.ServiceConnection;
 import android.content.pm.PackageManager;
 import android.graphics.Bitmap;
+import android.graphics.Rect;
 import android.os.Bundle;
 import android.os.Environment;
 import android.os.Handler;
@@ -13,6 +14,7 @@ import android.content.Intent;
 import android.view.View;
 import android.widget.Button;
 import android.widget.TextView;
+import android.widget.Toast;
 
 import androidx.annotation.NonNull;
 import androidx.annotation.OptIn;
@@ -25,34 +27,21 @@ import androidx.camera.view.PreviewView;
 import androidx.core.content.ContextCompat;
 
 import com.google.common.util.concurrent.ListenableFuture;
-import com.google.firebase.database.DataSnapshot;
-import com.google.firebase.database.DatabaseError;
 import com.google.firebase.database.DatabaseReference;
 import com.google.firebase.database.FirebaseDatabase;
-import com.google.firebase.database.ValueEventListener;
 import com.google.firebase.firestore.FirebaseFirestore;
-import com.google.mlkit.vision.common.InputImage;
-import com.google.mlkit.vision.face.Face;
-import com.google.mlkit.vision.face.FaceDetection;
-import com.google.mlkit.vision.face.FaceDetector;
-import com.google.mlkit.vision.face.FaceDetectorOptions;
-import com.google.mlkit.vision.face.FaceLandmark;
-
-import org.json.JSONArray;
-import org.json.JSONObject;
 
 import java.io.File;
 import java.io.FileInputStream;
-import java.io.InputStream;
-import java.nio.charset.StandardCharsets;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
-import java.util.Iterator;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.Objects;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
@@ -67,6 +56,13 @@ public class MainActivity extends BaseDrawerActivity {
     private static final int REQUEST_CAMERA_PERMISSION = 1001;
     private PreviewView previewView;
     private FaceOverlayView overlayView;
+    private final List<FaceOverlayView.FaceGraphic> overlayGraphics = new ArrayList<>();
+    private final FaceOverlayView.FaceGraphic[] overlayGraphicPool = new FaceOverlayView.FaceGraphic[MAX_FACES_PER_FRAME];
+    {
+        for (int i = 0; i < overlayGraphicPool.length; i++) {
+            overlayGraphicPool[i] = new FaceOverlayView.FaceGraphic(new Rect(), "", 0f);
+        }
+    }
     private TextView statusTextView;
     private TextView countdownTextView;
     private Button confirmYesButton;
@@ -74,12 +70,32 @@ public class MainActivity extends BaseDrawerActivity {
 
     private FaceNet faceNet;
     private ImageAligner imageAligner;
+    private CascadeFaceDetector faceDetector;
+    private final MotionGate motionGate = new MotionGate();
+    private RecognitionPipeline recognitionPipeline;
+    private ProcessCameraProvider cameraProvider;
+    private AnalysisSettings analysisSettings;
+    private AnalysisTuner analysisTuner; // non-null only while the first-launch tuning runs
     private ExecutorService cameraExecutor;
 
-    private final Map<String, float[]> KNOWN_FACE_EMBEDDINGS = new HashMap<>();
-    private final Map<String, List<float[]>> facultyEmbeddings = new HashMap<>();
+    private GalleryRepository galleryRepository;
+    private TemplateAdapter templateAdapter;
+
+    private static final FaceMatcher.Mode MATCH_MODE = FaceMatcher.Mode.KNN; // CENTROID or KNN
+    // Recognize every face in view and let the acting one drive the door; false ignores crowded frames
+    private static final boolean MULTI_FACE_MODE = true; // true or false
+    private static final int MAX_FACES_PER_FRAME = 4;
+    // Acting-face score: relative size, closeness to the centre, and a bonus for whoever acted last
+    private static final float ACT_SIZE_WEIGHT = 0.6f;
+    private static final float ACT_CENTER_WEIGHT = 0.4f;
+    private static final float ACT_CONTINUITY_BONUS = 0.3f;
+    // Written by recognizeFrame and read by pickActingFace, both on the RecognitionPipeline thread;
+    // no other thread touches it
+    private Integer actingTrackId = null;
+    private static final boolean RUN_MATCHER_BENCHMARK = false;
+    private static final boolean RUN_MODEL_BENCHMARK = false;
+    private static final boolean RUN_QUALITY_BENCHMARK = false;
 
-    private static final int STABILITY_FRAMES_NEEDED = 20;
     private static final long UNLOCK_COOLDOWN_MILLIS = 10000;
 
     private static final long CONFIRMATION_TIMEOUT_MILLIS = 10000;
@@ -87,16 +103,19 @@ public class MainActivity extends BaseDrawerActivity {
 
     private String stableMatchName = "Scanning...";
     private String currentBestMatch = "Scanning...";
-    private int stableMatchCount = 0;
+    private final EvidenceAccumulator evidence = new EvidenceAccumulator();
 
-    private boolean isDoorLocked = true;
-    private boolean isAwaitingLockConfirmation = false;
-    private boolean isAwaitingUnlockConfirmation = false;
-    private boolean isAwaitingLockerRecognition = false;
+    // Written on the main thread, read by recognition (expectedIdentity) on the pipeline thread
+    private volatile boolean isDoorLocked = true;
+    private volatile boolean isAwaitingLockConfirmation = false;
+    private volatile boolean isAwaitingUnlockConfirmation = false;
+    private volatile boolean isAwaitingLockerRecognition = false;
 
     private String authorizedLocker = null;
     private String authorizedUnlocker = null;
-    private String occupyingFacultyName = null;
+    private OccupancyCache occupancy;
+    private volatile String rescanFacultyName; // set when DashboardActivity relaunches us for a rescan
+    private OccupancyCache.Listener occupancyListener;
     private String pendingConfirmationName = null;
     private long lastLockTimestamp = 0;
 
@@ -108,6 +127,7 @@ public class MainActivity extends BaseDrawerActivity {
     private FirebaseFirestore db;
 
     private final String currentLab = "CpeLab"; //CpeLab or CompLab3
+    private static final String REALTIME_DB_URL = "https://facultyfacialrecognition-default-rtdb.asia-southeast1.firebasedatabase.app/";
 
     private BluetoothService mBluetoothService;
     private boolean mIsBound = false;
@@ -148,6 +168,10 @@ public class MainActivity extends BaseDrawerActivity {
         confirmNoButton.setVisibility(View.GONE);
         btnBreakDone.setVisibility(View.GONE);
 
+        if ("rescan".equals(getIntent().getStringExtra("mode"))) {
+            rescanFacultyName = getIntent().getStringExtra("profName");
+        }
+
         confirmationHandler = new Handler();
         countdownDisplayHandler = new Handler();
         cameraExecutor = Executors.newSingleThreadExecutor();
@@ -155,41 +179,31 @@ public class MainActivity extends BaseDrawerActivity {
 
         db = FirebaseFirestore.getInstance();
 
-        checkRoomStatusAndInitialize();
+        startOccupancyAndInitialize();
 
         Intent intent = new Intent(this, BluetoothService.class);
         bindService(intent, mConnection, BIND_AUTO_CREATE);
 
     }
 
-    private void checkRoomStatusAndInitialize() {
-        FirebaseDatabase database = FirebaseDatabase.getInstance("https://facultyfacialrecognition-default-rtdb.asia-southeast1.firebasedatabase.app/");
-        DatabaseReference dbRef = database.getReference(currentLab).child("Latest");
-
-        dbRef.addListenerForSingleValueEvent(new ValueEventListener() {
-            @Override
-            public void onDataChange(@NonNull DataSnapshot snapshot) {
-                if (snapshot.exists()) {
-                    String facultyStatus = snapshot.child("facultyStatus").getValue(String.class);
-                    String facultyName = snapshot.child("facultyName").getValue(String.class);
-
-                    if ("In Class".equals(facultyStatus) || "Break".equals(facultyStatus)) {
-                        // Room is occupied, store the name and continue
-                        occupyingFacultyName = facultyName;
-                        updateUiOnThread("Room Occupied", "Currently in use by Prof. " + facultyName);
-                    }
-                }
-                // Always proceed with initialization regardless of room status
-                proceedWithInitialization();
+    // The camera starts right away; occupancy comes from local state and is kept live by a listener
+    private void startOccupancyAndInitialize() {
+        occupancy = new FirebaseOccupancyCache(this, FirebaseDatabase.getInstance(REALTIME_DB_URL), currentLab);
+        occupancyListener = occupant -> {
+            if (occupant != null) {
+                updateUiOnThread("Room Occupied", "Currently in use by Prof. " + occupant);
+            } else if (isDoorLocked && !isAwaitingLockerRecognition
+                    && !isAwaitingLockConfirmation && !isAwaitingUnlockConfirmation) {
+                // Room freed: drop evidence gathered while it was held and scan afresh
+                resetStateAfterAction();
+                updateUiOnThread("Awaiting Recognition", "Scanning for faculty...");
             }
+        };
+        occupancy.addListener(occupancyListener);
+        occupancyListener.onOccupancyChanged(occupancy.getOccupant());
+        occupancy.start();
 
-            @Override
-            public void onCancelled(@NonNull DatabaseError error) {
-                Log.e(TAG, "Failed to read room status.", error.toException());
-                // Assume room is available on error to not block usage
-                proceedWithInitialization();
-            }
-        });
+        proceedWithInitialization();
     }
 
     private void proceedWithInitialization() {
@@ -200,16 +214,30 @@ public class MainActivity extends BaseDrawerActivity {
 
     private void initializeSystem() {
         try {
-            faceNet = new FaceNet(this, "facenet.tflite");
+            faceNet = FaceNet.shared(this);
+
+            // Storage first, assets as fallback; later changes are picked up by the watcher
+            galleryRepository = GalleryRepository.getInstance(this);
+            galleryRepository.setLab(currentLab);
+            FaceGallery gallery = galleryRepository.load(MATCH_MODE, faceNet.getSpec());
+            galleryRepository.startWatching();
+            templateAdapter = new TemplateAdapter(galleryRepository.getStore());
+            Log.d(TAG, "Matching mode: " + gallery.getMatcher().getMode());
+            if (galleryRepository.isStoreRefused()) {
+                Toast.makeText(this, "Stored embeddings don't match the face model. Regenerate them in Admin.", Toast.LENGTH_LONG).show();
+            }
 
-            // Try loading from storage first
-            boolean embeddingsLoaded = loadEmbeddingsFromStorage();
-            if (!embeddingsLoaded) {
-                // Fallback to assets
-                embeddingsLoaded = loadEmbeddingsFromAssets();
+            if (RUN_MATCHER_BENCHMARK) {
+                new Thread(() -> MatcherBenchmark.run(gallery.getSamples())).start();
+            }
+            if (RUN_MODEL_BENCHMARK) {
+                new Thread(() -> ModelBenchmark.run(this, galleryRepository.getGalleryDir())).start();
+            }
+            if (RUN_QUALITY_BENCHMARK) {
+                new Thread(() -> FaceQuality.benchmark(galleryRepository.getGalleryDir(), 20)).start();
             }
 
-            Log.d(TAG, "FaceNet model and embeddings loaded successfully. Embeddings loaded: " + embeddingsLoaded);
+            Log.d(TAG, "FaceNet model and embeddings loaded successfully. Identities loaded: " + gallery.size());
         } catch (Exception e) {
             Log.e(TAG, "Error initializing FaceNet or embeddings", e);
         }
@@ -281,6 +309,11 @@ public class MainActivity extends BaseDrawerActivity {
         stopConfirmationTimer();
         stopVisualCountdown();
 
+        // A confirmed identity is a strong label for this session's probes
+        if (templateAdapter != null && pendingConfirmationName != null) {
+            templateAdapter.commit(pendingConfirmationName, galleryRepository.current());
+        }
+
         if (isAwaitingLockConfirmation) {
             handleLockConfirmation();
 
@@ -313,9 +346,7 @@ public class MainActivity extends BaseDrawerActivity {
         data.put("timestamp", timestamp);
 
         try {
-            FirebaseDatabase database = FirebaseDatabase.getInstance(
-                    "https://facultyfacialrecognition-default-rtdb.asia-southeast1.firebasedatabase.app/"
-            );
+            FirebaseDatabase database = FirebaseDatabase.getInstance(REALTIME_DB_URL);
 
             DatabaseReference dbRef = database
                     .getReference(currentLab)
@@ -559,6 +590,7 @@ public class MainActivity extends BaseDrawerActivity {
     public void onConfirmNoClicked(View view) {
         stopConfirmationTimer();
         stopVisualCountdown();
+        if (templateAdapter != null) templateAdapter.clear();
         pendingConfirmationName = null;
 
         if (isAwaitingLockConfirmation) {
@@ -578,13 +610,13 @@ public class MainActivity extends BaseDrawerActivity {
             }
         }
 
-        stableMatchCount = 0;
+        evidence.reset();
         stableMatchName = "Scanning...";
         currentBestMatch = "Scanning...";
     }
 
     private void resetStateAfterAction() {
-        stableMatchCount = 0;
+        evidence.reset();
         authorizedLocker = null;
         stableMatchName = "Scanning...";
         currentBestMatch = "Scanning...";
@@ -594,7 +626,15 @@ public class MainActivity extends BaseDrawerActivity {
         ListenableFuture<ProcessCameraProvider> cameraProviderFuture = ProcessCameraProvider.getInstance(this);
         cameraProviderFuture.addListener(() -> {
             try {
-                ProcessCameraProvider cameraProvider = cameraProviderFuture.get();
+                cameraProvider = cameraProviderFuture.get();
+
+                // Tuned once per device; until then each candidate is tried in turn
+                analysisSettings = AnalysisSettings.load(this);
+                if (analysisSettings == null) {
+                    analysisTuner = new AnalysisTuner();
+                    analysisSettings = analysisTuner.current();
+                }
+                Log.d(TAG, "Analysis settings: " + analysisSettings);
                 bindPreviewAndAnalyzer(cameraProvider);
             } catch (ExecutionException | InterruptedException e) {
                 Log.e(TAG, "Camera provider error", e);
@@ -610,26 +650,44 @@ public class MainActivity extends BaseDrawerActivity {
         CameraSelector selector = CameraSelector.DEFAULT_FRONT_CAMERA;
         preview.setSurfaceProvider(previewView.getSurfaceProvider());
 
-        ImageAnalysis imageAnalysis = new ImageAnalysis.Builder()
+        ImageAnalysis imageAnalysis = analysisSettings.applyTo(new ImageAnalysis.Builder())
                 .setBackpressureStrategy(ImageAnalysis.STRATEGY_KEEP_ONLY_LATEST)
                 .build();
 
-        FaceDetectorOptions options = new FaceDetectorOptions.Builder()
-                .setPerformanceMode(FaceDetectorOptions.PERFORMANCE_MODE_ACCURATE)
-                .setLandmarkMode(FaceDetectorOptions.LANDMARK_MODE_ALL)
-                .setClassificationMode(FaceDetectorOptions.CLASSIFICATION_MODE_NONE)
-                .enableTracking()
-                .build();
-
-        FaceDetector detector = FaceDetection.getClient(options);
+        // FAST gate on every frame, ACCURATE landmarks only on crops around the faces it finds
+        if (faceDetector == null) {
+            faceDetector = new CascadeFaceDetector(this, cameraExecutor);
+            faceDetector.setMultiFace(MULTI_FACE_MODE);
+        }
+        CascadeFaceDetector detector = faceDetector;
+        if (recognitionPipeline == null) recognitionPipeline = new RecognitionPipeline(this::recognizeFrame);
+        RecognitionPipeline pipeline = recognitionPipeline;
+        cameraExecutor.execute(motionGate::reset);
 
         imageAnalysis.setAnalyzer(cameraExecutor, image -> {
             try {
                 final android.media.Image mediaImage = image.getImage();
+                // Still corridor: skip detection; the tuner needs every frame it measures
+                if (mediaImage != null && analysisTuner == null
+                        && !motionGate.shouldProcess(mediaImage, System.currentTimeMillis())) {
+                    image.close();
+                    return;
+                }
                 if (mediaImage != null) {
-                    InputImage inputImage = InputImage.fromMediaImage(mediaImage, image.getImageInfo().getRotationDegrees());
-                    detector.process(inputImage)
-                            .addOnSuccessListener(faces -> handleFaces(faces, inputImage))
+                    final long detectStart = System.nanoTime();
+                    detector.process(mediaImage, image.getImageInfo().getRotationDegrees())
+                            .addOnSuccessListener(result -> {
+                                boolean tuningStepDone = false;
+                                try {
+                                    motionGate.setFacesPresent(!result.faces.isEmpty());
+                                    tuningStepDone = analysisTuner != null && analysisTuner.onFrame(result);
+                                } finally {
+                                    // Recognition owns the result now; closing the image lets the next frame's
+                                    // detection overlap this frame's recognition
+                                    pipeline.submit(result, System.nanoTime() - detectStart);
+                                }
+                                if (tuningStepDone) onTuningStepDone();
+                            })
                             .addOnFailureListener(e -> Log.e(TAG, "Face detection failed", e))
                             .addOnCompleteListener(task -> image.close());
                 } else {
@@ -644,78 +702,180 @@ public class MainActivity extends BaseDrawerActivity {
         cameraProvider.bindToLifecycle(this, selector, preview, imageAnalysis);
     }
 
-    private void handleFaces(List<Face> faces, InputImage inputImage) {
-        List<FaceOverlayView.FaceGraphic> graphics = new ArrayList<>();
-        Bitmap fullBmp = InputImageUtils.getBitmapFromInputImage(this, inputImage);
-        if (fullBmp == null) return;
+    // Runs on the main thread when the tuner finishes measuring one candidate
+    private void onTuningStepDone() {
+        if (analysisTuner.isDone()) {
+            analysisSettings = analysisTuner.best();
+            analysisSettings.save(this);
+            analysisTuner = null;
+        } else {
+            analysisSettings = analysisTuner.current();
+        }
+        if (cameraProvider != null) bindPreviewAndAnalyzer(cameraProvider);
+    }
+
+    // Recognition stage, on the pipeline's thread: align, embed and match the faces of one frame
+    private void recognizeFrame(CascadeFaceDetector.Result detection) {
+        // The overlay copies what it needs, so one list and set of graphics are reused for every frame
+        List<FaceOverlayView.FaceGraphic> graphics = overlayGraphics;
+        graphics.clear();
+        List<DetectedFace> faces = detection.faces;
 
         String currentBestFrameMatch = "Scanning...";
         float bestDist = Float.MAX_VALUE;
-        String finalMessage = "";
-        String countdownMessage = "";
-
-        if (faces.size() != 1) {
-            // No single face detected, don't calculate accuracy or log anything
+        List<FaceMatcher.Match> frameRanking = null;
+        Integer frameTrackId = null;
+        // One snapshot per frame; a reload swaps in a new one for the next frame
+        FaceGallery frameGallery = galleryRepository.current();
+        FaceMatcher faceMatcher = frameGallery.getMatcher();
+        String frameExpected = expectedIdentity(faceMatcher);
+
+        if (detection.frame == null || faces.isEmpty() || (faces.size() > 1 && !MULTI_FACE_MODE)) {
+            // Nothing we can recognize in this frame, don't calculate accuracy or log anything
             currentBestFrameMatch = "Scanning...";
         } else {
-            // Single face detected — proceed with embedding, ranking, and logging
-            Face face = faces.get(0);
-            android.graphics.PointF leftEye = face.getLandmark(FaceLandmark.LEFT_EYE) != null ? face.getLandmark(FaceLandmark.LEFT_EYE).getPosition() : null;
-            android.graphics.PointF rightEye = face.getLandmark(FaceLandmark.RIGHT_EYE) != null ? face.getLandmark(FaceLandmark.RIGHT_EYE).getPosition() : null;
+            // Every face is aligned and quality-checked; the survivors share one batched FaceNet call.
+            // The cascade owns the frame.
+            int faceCount = Math.min(faces.size(), MAX_FACES_PER_FRAME);
+            List<DetectedFace> probed = new ArrayList<>(faceCount);
+            List<Bitmap> crops = new ArrayList<>(faceCount);
+            for (int i = 0; i < faceCount; i++) {
+                DetectedFace face = faces.get(i);
+                Bitmap faceBmp = imageAligner.alignAndCropFace(detection.frame, face.box, face.leftEye, face.rightEye);
+                if (faceBmp == null) continue;
+
+                // Blurry, dark or tiny faces are dropped before FaceNet; they add no evidence
+                FaceQuality.Score quality = FaceQuality.get().score(faceBmp, face.box.width());
+                if (quality.isBlurry() || quality.score < FaceQuality.MIN_LIVE_SCORE) {
+                    Log.d(TAG, "Skipping low-quality face: " + quality);
+                    BitmapPool.release(faceBmp);
+                    continue;
+                }
+                probed.add(face);
+                crops.add(faceBmp);
+            }
 
-            Bitmap faceBmp = imageAligner.alignAndCropFace(fullBmp, face.getBoundingBox(), leftEye, rightEye);
+            List<float[]> embs = crops.isEmpty() ? Collections.emptyList() : faceNet.getEmbeddings(crops);
+            for (Bitmap crop : crops) BitmapPool.release(crop);
+            for (float[] emb : embs) {
+                if (emb != null) normalizeEmbedding(emb);
+            }
 
-            if (faceBmp != null) {
-                float[] emb = faceNet.getEmbedding(faceBmp);
-                if (emb != null) {
-                    normalizeEmbedding(emb);
+            // When we already know who should appear, a 1:1 check replaces the full ranking
+            List<List<FaceMatcher.Match>> rankings;
+            if (frameExpected != null) {
+                rankings = new ArrayList<>(embs.size());
+                for (float[] emb : embs) {
+                    FaceMatcher.Match match = emb != null ? faceMatcher.verify(emb, frameExpected) : null;
+                    rankings.add(match != null ? Collections.singletonList(match) : Collections.emptyList());
+                }
+            } else {
+                // One pass over the gallery for all faces; faculty scheduled in this lab now are searched first
+                rankings = frameGallery.getTieredMatcher().rankAll(embs);
+            }
 
-                    float maxDistance = 10f;
-                    int rank = 1;
-                    Map<String, Float> rankedMatches = new HashMap<>();
+            // Everyone in view gets a box and, when recognized, a label
+            for (int i = 0; i < faceCount; i++) {
+                DetectedFace face = faces.get(i);
+                FaceOverlayView.FaceGraphic graphic = overlayGraphicPool[i];
+                graphic.rect.set(face.box);
+                graphic.label = "";
+                graphic.distance = Float.MAX_VALUE;
+                int p = probed.indexOf(face);
+                if (p >= 0 && !rankings.get(p).isEmpty()) {
+                    FaceMatcher.Match top = rankings.get(p).get(0);
+                    boolean accepted = frameExpected == null || top.distance <= FaceMatcher.VERIFY_THRESHOLD;
+                    graphic.label = accepted ? top.name : "";
+                    graphic.distance = top.distance;
+                }
+                graphics.add(graphic);
+            }
 
-                    for (Map.Entry<String, float[]> entry : KNOWN_FACE_EMBEDDINGS.entrySet()) {
-                        float distance = FaceNet.distance(emb, entry.getValue());
-                        float accuracy = 1f - (distance / maxDistance);
-                        rankedMatches.put(entry.getKey(), accuracy);
+            int acting = pickActingFace(probed, embs, detection.frame.getWidth(), detection.frame.getHeight());
+            frameTrackId = acting >= 0 ? probed.get(acting).trackingId
+                    : faces.size() == 1 ? faces.get(0).trackingId : null;
+
+            if (acting >= 0) {
+                actingTrackId = frameTrackId;
+                float[] emb = embs.get(acting);
+                List<FaceMatcher.Match> sortedList = rankings.get(acting);
+
+                if (frameExpected != null) {
+                    if (!sortedList.isEmpty()) {
+                        FaceMatcher.Match match = sortedList.get(0);
+                        Log.d("FaceRecognition", String.format(Locale.US, "Verify %s: distance %.4f (threshold %.2f)",
+                                frameExpected, match.distance, FaceMatcher.VERIFY_THRESHOLD));
+                        bestDist = match.distance;
+                        if (match.distance <= FaceMatcher.VERIFY_THRESHOLD) {
+                            currentBestFrameMatch = frameExpected;
+                            frameRanking = sortedList;
+                        }
                     }
-
-                    // Sort matches by descending accuracy
-                    List<Map.Entry<String, Float>> sortedList = new ArrayList<>(rankedMatches.entrySet());
-                    sortedList.sort((a, b) -> Float.compare(b.getValue(), a.getValue()));
-
+                } else if (!sortedList.isEmpty()) {
                     // Log only if there’s a valid match
-                    Log.d("FaceRecognitionRanking", "===== Ranking of Matches ======");
-                    for (Map.Entry<String, Float> match : sortedList) {
-                        Log.d("FaceRecognitionRanking", String.format(Locale.US, "%d. %s : %.4f",
-                                rank++, match.getKey(), match.getValue()));
+                    int rank = 1;
+                    Log.d("FaceRecognitionRanking", "===== Ranking of Matches (" + faceMatcher.getMode() + ", "
+                            + probed.size() + " face(s)) ======");
+                    for (FaceMatcher.Match match : sortedList) {
+                        Log.d("FaceRecognitionRanking", String.format(Locale.US, "%d. %s : %.4f (votes=%d)",
+                                rank++, match.name, match.accuracy(), match.votes));
                     }
 
-                    Map.Entry<String, Float> bestMatch = sortedList.get(0);
+                    FaceMatcher.Match bestMatch = sortedList.get(0);
                     Log.d("FaceRecognition", String.format(Locale.US, "Best match this frame: %s | Accuracy = %.4f",
-                            bestMatch.getKey(), bestMatch.getValue()));
+                            bestMatch.name, bestMatch.accuracy()));
 
-                    currentBestFrameMatch = bestMatch.getKey();
+                    currentBestFrameMatch = bestMatch.name;
+                    frameRanking = sortedList;
+                    bestDist = bestMatch.distance;
 
                     // --- BLOCK ACCESS IF UNKNOWN DETECTED ---
                     if ("Unknown".equals(currentBestFrameMatch)) {
-                        finalMessage = "Access Denied";
-                        countdownMessage = "Unknown face detected. Recognition failed.";
-                        stableMatchCount = 0;
-                        stableMatchName = "Scanning...";
-                        updateUiOnThread(finalMessage, countdownMessage);
-                        runOnUiThread(() -> overlayView.setFaces(graphics));
+                        overlayView.setImageSourceInfo(detection.imageWidth, detection.imageHeight, true);
+                        overlayView.setFaces(graphics);
+                        final FrameRecognition unknown = new FrameRecognition(frameExpected, currentBestFrameMatch, null, frameTrackId);
+                        runOnUiThread(() -> handleRecognition(unknown));
                         return;
                     }
-
-
                 }
 
+                // Kept until the professor confirms or rejects this session
+                if (templateAdapter != null && frameRanking != null) {
+                    templateAdapter.offer(emb, frameRanking);
+                }
+                Log.d("FaceRecognition", String.format(Locale.US, "Acting face %d of %d, distance %.4f",
+                        acting + 1, probed.size(), bestDist));
             }
+        }
 
-            graphics.add(new FaceOverlayView.FaceGraphic(face.getBoundingBox(), "", bestDist));
+        overlayView.setImageSourceInfo(detection.imageWidth, detection.imageHeight, true);
+        overlayView.setFaces(graphics);
+
+        // The door state machine stays on the main thread, with the buttons and timers it shares state with
+        final FrameRecognition frame = new FrameRecognition(frameExpected, currentBestFrameMatch, frameRanking, frameTrackId);
+        runOnUiThread(() -> handleRecognition(frame));
+    }
+
+    // Main thread: folds one recognized frame into the evidence and drives the lock/unlock flow
+    private void handleRecognition(FrameRecognition frame) {
+        // Whoever we expected may have changed while this frame was being recognized
+        if (!Objects.equals(frame.expected, expectedIdentity(galleryRepository.current().getMatcher()))) return;
+        evidence.setVerifying(frame.expected != null);
+
+        if ("Unknown".equals(frame.bestMatch)) {
+            evidence.reset();
+            stableMatchName = "Scanning...";
+            updateUiOnThread("Access Denied", "Unknown face detected. Recognition failed.");
+            return;
         }
 
+        String currentBestFrameMatch = frame.bestMatch;
+        List<FaceMatcher.Match> frameRanking = frame.ranking;
+        Integer frameTrackId = frame.trackId;
+        String frameExpected = frame.expected;
+        String finalMessage = "";
+        String countdownMessage = "";
+
         if (isAwaitingLockConfirmation || isAwaitingUnlockConfirmation) {
 
             String authorizedName = pendingConfirmationName;
@@ -724,15 +884,14 @@ public class MainActivity extends BaseDrawerActivity {
                 finalMessage = isAwaitingLockConfirmation ? "Confirm Lock Identity" : "Confirm Unlock Identity";
                 countdownMessage = "Is this you: " + authorizedName + "? (Awaiting confirmation)";
             } else {
-                runOnUiThread(() -> overlayView.setFaces(graphics));
                 return;
             }
 
         } else if (isAwaitingLockerRecognition) {
 
-            updateStabilityState(currentBestFrameMatch);
+            updateStabilityState(frameTrackId, frameRanking);
 
-            if (stableMatchCount >= STABILITY_FRAMES_NEEDED) {
+            if (evidence.isDecided()) {
 
                 boolean isLockerIdentityConfirmed = !stableMatchName.equals("Unknown") &&
                         !stableMatchName.equals("Scanning...") &&
@@ -743,7 +902,7 @@ public class MainActivity extends BaseDrawerActivity {
                     isAwaitingLockConfirmation = true;
                     authorizedLocker = stableMatchName;
                     pendingConfirmationName = stableMatchName;
-                    stableMatchCount = 0;
+                    evidence.reset();
 
                     startConfirmationTimer(true);
                     startVisualCountdown();
@@ -755,13 +914,12 @@ public class MainActivity extends BaseDrawerActivity {
                     finalMessage = "Recognition Failed";
                     countdownMessage = "Lock initiation failed. Please try again.";
                 }
-            } else if (stableMatchCount > 0 && !currentBestFrameMatch.equals("Scanning...")) {
-                int remainingFrames = STABILITY_FRAMES_NEEDED - stableMatchCount;
+            } else if (evidence.hasEvidence() && !currentBestFrameMatch.equals("Scanning...")) {
                 finalMessage = "Recognizing: " + currentBestMatch;
-                countdownMessage = String.format(Locale.US, "Hold Steady to LOCK! (%d frames remaining)", remainingFrames);
+                countdownMessage = String.format(Locale.US, "Hold Steady to LOCK! (%d%% confident)", Math.round(evidence.getProgress() * 100));
             } else {
                 finalMessage = "Awaiting Locker Recognition";
-                countdownMessage = "Please hold a faculty face steady for 5 seconds to initiate lock.";
+                countdownMessage = "Please hold a faculty face steady to initiate lock.";
             }
 
         } else if (isDoorLocked) {
@@ -773,18 +931,17 @@ public class MainActivity extends BaseDrawerActivity {
                 countdownMessage = String.format(Locale.US, "Unlock Cooldown Active: %d seconds remaining.", remainingSeconds);
 
                 updateUiOnThread(finalMessage, countdownMessage);
-                runOnUiThread(() -> overlayView.setFaces(graphics));
                 return;
             }
 
-            updateStabilityState(currentBestFrameMatch);
+            updateStabilityState(frameTrackId, frameRanking);
 
-            if (stableMatchCount >= STABILITY_FRAMES_NEEDED) {
+            if (evidence.isDecided()) {
 
+                String occupyingFacultyName = occupancy.getOccupant();
                 if (occupyingFacultyName != null && !stableMatchName.equals(occupyingFacultyName)) {
                     updateUiOnThread("Access Denied", "Room is currently occupied by Prof. " + occupyingFacultyName);
-                    stableMatchCount = 0; // Reset to allow another scan
-                    runOnUiThread(() -> overlayView.setFaces(graphics));
+                    evidence.reset(); // Reset to allow another scan
                     return;
                 }
 
@@ -795,7 +952,7 @@ public class MainActivity extends BaseDrawerActivity {
                 if (isUnlockIdentityConfirmed) {
                     isAwaitingUnlockConfirmation = true;
                     pendingConfirmationName = stableMatchName;
-                    stableMatchCount = 0;
+                    evidence.reset();
 
                     startConfirmationTimer(false);
                     startVisualCountdown();
@@ -805,12 +962,14 @@ public class MainActivity extends BaseDrawerActivity {
                 } else {
                     finalMessage = "Access Denied";
                     countdownMessage = "Recognition Failed. Please try again.";
-                    stableMatchCount = 0;
+                    evidence.reset();
                 }
-            } else if (stableMatchCount > 0 && !currentBestFrameMatch.equals("Scanning...")) {
-                int remainingFrames = STABILITY_FRAMES_NEEDED - stableMatchCount;
+            } else if (evidence.hasEvidence() && !currentBestFrameMatch.equals("Scanning...")) {
                 finalMessage = "Recognizing: " + currentBestMatch;
-                countdownMessage = String.format(Locale.US, "Hold Steady for unlock! (%d frames remaining)", remainingFrames);
+                countdownMessage = String.format(Locale.US, "Hold Steady for unlock! (%d%% confident)", Math.round(evidence.getProgress() * 100));
+            } else if (frameExpected != null) {
+                finalMessage = "Awaiting Prof. " + frameExpected;
+                countdownMessage = "Verifying returning faculty...";
             } else {
                 finalMessage = "Awaiting Recognition";
                 countdownMessage = "Scanning for faculty...";
@@ -821,24 +980,72 @@ public class MainActivity extends BaseDrawerActivity {
         }
 
         updateUiOnThread(finalMessage, countdownMessage);
+    }
 
-        overlayView.setImageSourceInfo(inputImage.getWidth(), inputImage.getHeight(), true);
-        runOnUiThread(() -> overlayView.setFaces(graphics));
+    // What recognition concluded about one frame, handed to the main thread
+    private static class FrameRecognition {
+        final String expected;
+        final String bestMatch;
+        final List<FaceMatcher.Match> ranking;
+        final Integer trackId;
+
+        FrameRecognition(String expected, String bestMatch, List<FaceMatcher.Match> ranking, Integer trackId) {
+            this.expected = expected;
+            this.bestMatch = bestMatch;
+            this.ranking = ranking;
+            this.trackId = trackId;
+        }
     }
 
-    private synchronized void updateStabilityState(String newMatch) {
-        if (newMatch.equals(currentBestMatch)) {
-            stableMatchCount++;
-        } else {
-            currentBestMatch = newMatch;
-            stableMatchCount = 1;
+    /**
+     * Index in probed of the face acting on the door, or -1 if none has an embedding. Bigger and
+     * more central faces win; whoever acted in the previous frames gets a bonus so the choice
+     * doesn't flicker between two similar faces.
+     */
+    private int pickActingFace(List<DetectedFace> probed, List<float[]> embs, int frameWidth, int frameHeight) {
+        float maxArea = 1f;
+        for (int i = 0; i < probed.size(); i++) {
+            Rect b = probed.get(i).box;
+            if (embs.get(i) != null) maxArea = Math.max(maxArea, b.width() * (float) b.height());
         }
 
-        if (stableMatchCount >= STABILITY_FRAMES_NEEDED) {
-            stableMatchName = currentBestMatch;
-        } else if (stableMatchCount == 0 || newMatch.equals("Scanning...")) {
-            stableMatchName = "Scanning...";
+        float cx = frameWidth / 2f;
+        float cy = frameHeight / 2f;
+        float halfDiagonal = (float) Math.hypot(cx, cy);
+        int best = -1;
+        float bestScore = -Float.MAX_VALUE;
+        for (int i = 0; i < probed.size(); i++) {
+            if (embs.get(i) == null) continue;
+            DetectedFace face = probed.get(i);
+            Rect b = face.box;
+            float size = b.width() * (float) b.height() / maxArea;
+            float centrality = 1f - (float) Math.hypot(b.exactCenterX() - cx, b.exactCenterY() - cy) / halfDiagonal;
+            float score = ACT_SIZE_WEIGHT * size + ACT_CENTER_WEIGHT * centrality;
+            if (actingTrackId != null && actingTrackId.equals(face.trackingId)) score += ACT_CONTINUITY_BONUS;
+            if (score > bestScore) {
+                bestScore = score;
+                best = i;
+            }
         }
+        return best;
+    }
+
+    /**
+     * The faculty who should appear next, if we know it: the professor returning to a rescan,
+     * or whoever holds the room. Only used while waiting to unlock.
+     */
+    private String expectedIdentity(FaceMatcher matcher) {
+        if (!isDoorLocked || isAwaitingLockerRecognition || isAwaitingLockConfirmation || isAwaitingUnlockConfirmation) {
+            return null;
+        }
+        String expected = rescanFacultyName != null ? rescanFacultyName : occupancy.getOccupant();
+        return matcher.hasIdentity(expected) ? expected : null;
+    }
+
+    private synchronized void updateStabilityState(Integer trackId, List<FaceMatcher.Match> ranking) {
+        evidence.update(trackId, ranking, System.currentTimeMillis());
+        currentBestMatch = evidence.getLeader();
+        stableMatchName = evidence.getDecision();
     }
 
     private void updateUiOnThread(final String status, final String countdown) {
@@ -865,113 +1072,6 @@ public class MainActivity extends BaseDrawerActivity {
         }
     }
 
-    private boolean loadEmbeddingsFromAssets() {
-        try {
-            InputStream is = getAssets().open("embeddings.json");
-            String json = readStreamToString(is);
-            is.close();
-
-            // Parse JSON as Map<String, List<List<Double>>> first
-            Map<String, List<List<Double>>> temp = new Gson().fromJson(
-                    json,
-                    new TypeToken<Map<String, List<List<Double>>>>() {}.getType()
-            );
-
-            KNOWN_FACE_EMBEDDINGS.clear();
-
-            for (Map.Entry<String, List<List<Double>>> entry : temp.entrySet()) {
-                String name = entry.getKey();
-                List<List<Double>> embeddingsList = entry.getValue();
-
-                List<Double> firstEmb = embeddingsList.get(0);
-                float[] embArr = new float[firstEmb.size()];
-                for (int j = 0; j < firstEmb.size(); j++) {
-                    embArr[j] = firstEmb.get(j).floatValue();
-                }
-                KNOWN_FACE_EMBEDDINGS.put(name, embArr);
-            }
-
-            Log.i(TAG, "✅ Loaded embeddings from assets: " + KNOWN_FACE_EMBEDDINGS.size());
-            return true;
-
-        } catch (Exception e) {
-            Log.e(TAG, "Error loading embeddings from assets", e);
-            return false;
-        }
-    }
-
-
-    private boolean loadEmbeddingsFromStorage() {
-        try {
-            File embeddingsFile = new File(getExternalFilesDir("Pictures/FacultyPhotos"), "embeddings.json");
-            if (!embeddingsFile.exists()) {
-                Log.d(TAG, "Embeddings file does not exist");
-                return false;
-            }
-
-            String jsonStr = new String(java.nio.file.Files.readAllBytes(embeddingsFile.toPath()), StandardCharsets.UTF_8);
-            JSONObject jsonObj = new JSONObject(jsonStr);
-
-            facultyEmbeddings.clear();
-            KNOWN_FACE_EMBEDDINGS.clear();
-
-            Iterator<String> keys = jsonObj.keys();
-            while (keys.hasNext()) {
-                String facultyName = keys.next();
-                JSONArray embeddingsArray = jsonObj.getJSONArray(facultyName);
-
-                if (embeddingsArray.length() == 0) continue;
-
-                // Store all embeddings in facultyEmbeddings
-                List<float[]> allEmbeddings = new ArrayList<>();
-                for (int i = 0; i < embeddingsArray.length(); i++) {
-                    JSONArray arr = embeddingsArray.getJSONArray(i);
-                    float[] emb = new float[arr.length()];
-                    for (int j = 0; j < arr.length(); j++) {
-                        emb[j] = (float) arr.getDouble(j);
-                    }
-                    allEmbeddings.add(emb);
-                }
-                facultyEmbeddings.put(facultyName, allEmbeddings);
-
-                // Compute the average embedding for KNOWN_FACE_EMBEDDINGS
-                int embSize = allEmbeddings.get(0).length;
-                float[] avgEmb = new float[embSize];
-                for (float[] emb : allEmbeddings) {
-                    for (int j = 0; j < embSize; j++) {
-                        avgEmb[j] += emb[j];
-                    }
-                }
-                for (int j = 0; j < embSize; j++) {
-                    avgEmb[j] /= allEmbeddings.size();
-                }
-
-                // Put only one key per person
-                KNOWN_FACE_EMBEDDINGS.put(facultyName, avgEmb);
-            }
-
-            Log.d(TAG, "✅ Embeddings loaded successfully from storage.");
-            Log.d(TAG, "Faculties loaded: " + facultyEmbeddings.size());
-            Log.d(TAG, "KNOWN_FACE_EMBEDDINGS loaded: " + KNOWN_FACE_EMBEDDINGS.size());
-
-            return true;
-
-        } catch (Exception e) {
-            Log.e(TAG, "Failed to load embeddings from storage", e);
-            return false;
-        }
-    }
-
-    private String readStreamToString(InputStream is) throws Exception {
-        StringBuilder sb = new StringBuilder();
-        byte[] buffer = new byte[1024];
-        int length;
-        while ((length = is.read(buffer)) != -1) {
-            sb.append(new String(buffer, 0, length, StandardCharsets.UTF_8));
-        }
-        return sb.toString();
-    }
-
     private void testLoadEmbeddings() {
         try {
             File embeddingsFile = new File(
@@ -985,7 +1085,7 @@ public class MainActivity extends BaseDrawerActivity {
             if (!embeddingsFile.exists()) return;
 
             FileInputStream fis = new FileInputStream(embeddingsFile);
-            String json = readStreamToString(fis);
+            String json = FaceGallery.readStreamToString(fis);
             fis.close();
 
             Log.d(TAG, "JSON content snippet: " + json.substring(0, Math.min(json.length(), 200)) + "...");
@@ -1024,7 +1124,14 @@ public class MainActivity extends BaseDrawerActivity {
         stopConfirmationTimer();
         stopVisualCountdown();
         if (cameraExecutor != null) cameraExecutor.shutdown();
+        if (recognitionPipeline != null) recognitionPipeline.shutdown();
         if (faceNet != null) faceNet.close();
+        if (faceDetector != null) faceDetector.close();
+        if (galleryRepository != null) galleryRepository.stopWatching();
+        if (occupancy != null) {
+            occupancy.removeListener(occupancyListener);
+            occupancy.stop();
+        }
         if (mIsBound) {
             unbindService(mConnection);
             mIsBound = false;
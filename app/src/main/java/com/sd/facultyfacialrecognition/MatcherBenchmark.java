@@ -0,0 +1,128 @@
+package com.sd.facultyfacialrecognition;
+
+import android.util.Log;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Leave-one-out comparison of CENTROID vs KNN matching on the enrolled gallery.
+ * Every stored sample is used as a probe against the rest; reports top-1 accuracy and latency.
+ *
+ * It also logs the distance and margin statistics {@link EvidenceAccumulator}'s models are
+ * built from: the probe's distance to its own centroid (genuine) and to the nearest other
+ * centroid (impostor), and the impostor-minus-genuine margin.
+ */
+public class MatcherBenchmark {
+    private static final String TAG = "MatcherBenchmark";
+
+    public static void run(Map<String, List<float[]>> samples) {
+        if (samples == null || samples.isEmpty()) {
+            Log.w(TAG, "No samples to benchmark");
+            return;
+        }
+
+        FaceMatcher knn = new FaceMatcher(FaceMatcher.Mode.KNN, new HashMap<>(), samples);
+        SampleIndex index = knn.getIndex();
+        if (index == null || index.size() < 2) {
+            Log.w(TAG, "Not enough samples to benchmark");
+            return;
+        }
+
+        // Per-faculty sums so each probe can be removed from its own centroid
+        Map<String, float[]> sums = new HashMap<>();
+        Map<String, Integer> counts = new HashMap<>();
+        for (Map.Entry<String, List<float[]>> entry : samples.entrySet()) {
+            if (entry.getValue().isEmpty()) continue;
+            float[] sum = new float[index.dimension()];
+            for (float[] emb : entry.getValue()) {
+                for (int j = 0; j < sum.length; j++) sum[j] += emb[j];
+            }
+            sums.put(entry.getKey(), sum);
+            counts.put(entry.getKey(), entry.getValue().size());
+        }
+
+        float[] probe = new float[index.dimension()];
+        int centroidCorrect = 0, knnCorrect = 0, probes = 0;
+        long centroidNanos = 0, knnNanos = 0;
+        Stats genuine = new Stats(), impostor = new Stats(), margin = new Stats();
+
+        for (int row = 0; row < index.size(); row++) {
+            String truth = index.labelAt(row);
+            if ("Unknown".equals(truth) || counts.get(truth) < 2) continue;
+            index.copySample(row, probe);
+
+            Map<String, float[]> centroids = new HashMap<>();
+            for (Map.Entry<String, float[]> entry : sums.entrySet()) {
+                boolean self = entry.getKey().equals(truth);
+                int n = counts.get(entry.getKey()) - (self ? 1 : 0);
+                float[] c = new float[probe.length];
+                for (int j = 0; j < c.length; j++) {
+                    c[j] = (entry.getValue()[j] - (self ? probe[j] : 0f)) / n;
+                }
+                centroids.put(entry.getKey(), c);
+            }
+            FaceMatcher centroid = new FaceMatcher(FaceMatcher.Mode.CENTROID, centroids, null);
+
+            long t0 = System.nanoTime();
+            List<FaceMatcher.Match> c = centroid.rank(probe);
+            long t1 = System.nanoTime();
+            List<FaceMatcher.Match> k = knn.rankKnn(probe, row);
+            long t2 = System.nanoTime();
+
+            centroidNanos += t1 - t0;
+            knnNanos += t2 - t1;
+            if (!c.isEmpty() && truth.equals(c.get(0).name)) centroidCorrect++;
+            if (!k.isEmpty() && truth.equals(k.get(0).name)) knnCorrect++;
+            probes++;
+
+            float own = Float.MAX_VALUE, other = Float.MAX_VALUE;
+            for (FaceMatcher.Match m : c) {
+                if (m.name.equals(truth)) own = m.distance;
+                else if (!"Unknown".equals(m.name)) other = Math.min(other, m.distance);
+            }
+            if (own != Float.MAX_VALUE) genuine.add(own);
+            if (other != Float.MAX_VALUE) impostor.add(other);
+            if (own != Float.MAX_VALUE && other != Float.MAX_VALUE) margin.add(other - own);
+        }
+
+        if (probes == 0) {
+            Log.w(TAG, "No faculty with at least two samples");
+            return;
+        }
+
+        Log.i(TAG, String.format(Locale.US,
+                "Probes=%d | CENTROID top-1=%.3f avg=%.3fms | KNN(k=%d) top-1=%.3f avg=%.3fms",
+                probes,
+                centroidCorrect / (float) probes, centroidNanos / 1e6 / probes,
+                FaceMatcher.DEFAULT_K,
+                knnCorrect / (float) probes, knnNanos / 1e6 / probes));
+        Log.i(TAG, String.format(Locale.US, "distance: genuine mean=%.3f sd=%.3f | impostor mean=%.3f sd=%.3f",
+                genuine.mean(), genuine.sd(), impostor.mean(), impostor.sd()));
+        Log.i(TAG, String.format(Locale.US, "margin: mean=%.3f sd=%.3f",
+                margin.mean(), margin.sd()));
+    }
+
+    private static class Stats {
+        double sum, sumSq;
+        int n;
+
+        void add(double v) {
+            sum += v;
+            sumSq += v * v;
+            n++;
+        }
+
+        double mean() {
+            return n > 0 ? sum / n : 0;
+        }
+
+        double sd() {
+            if (n < 2) return 0;
+            double m = mean();
+            return Math.sqrt(Math.max(0, sumSq / n - m * m));
+        }
+    }
+}
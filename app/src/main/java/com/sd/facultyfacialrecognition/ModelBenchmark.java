@@ -0,0 +1,103 @@
+package com.sd.facultyfacialrecognition;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.util.Log;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Compares the embedding models on the same evaluation set: the enrolled faculty photos on disk.
+ * For each model that can be loaded it reports average inference latency and leave-one-out
+ * nearest-neighbour top-1 accuracy. Models whose file is not bundled are skipped.
+ */
+public class ModelBenchmark {
+    private static final String TAG = "ModelBenchmark";
+
+    public static void run(Context context, File galleryDir) {
+        Map<String, List<Bitmap>> photos = loadPhotos(galleryDir);
+        if (photos.isEmpty()) {
+            Log.w(TAG, "No faculty photos to benchmark");
+            return;
+        }
+
+        try {
+            for (EmbeddingModel.Spec spec : EmbeddingModel.Spec.all()) {
+                FaceNet model;
+                try {
+                    model = new FaceNet(context, spec);
+                } catch (Exception e) {
+                    Log.w(TAG, "Skipping " + spec + ": " + e.getMessage());
+                    continue;
+                }
+
+                Map<String, List<float[]>> samples = new HashMap<>();
+                long nanos = 0;
+                int count = 0;
+                try {
+                    for (Map.Entry<String, List<Bitmap>> entry : photos.entrySet()) {
+                        List<float[]> embeddings = new ArrayList<>();
+                        for (Bitmap photo : entry.getValue()) {
+                            long t0 = System.nanoTime();
+                            float[] emb = model.getEmbedding(photo);
+                            nanos += System.nanoTime() - t0;
+                            count++;
+                            if (emb != null) embeddings.add(emb);
+                        }
+                        samples.put(entry.getKey(), embeddings);
+                    }
+                } finally {
+                    model.close();
+                }
+
+                Log.i(TAG, String.format(Locale.US, "%s: avg inference %.2f ms over %d photos | warm-up %d ms | LOO top-1 %.3f",
+                        spec, nanos / 1e6 / Math.max(1, count), count, model.getWarmUpMillis(), leaveOneOutAccuracy(samples)));
+            }
+        } finally {
+            for (List<Bitmap> list : photos.values()) {
+                for (Bitmap b : list) b.recycle();
+            }
+        }
+    }
+
+    // Each sample is matched against all the others by its nearest neighbour
+    private static float leaveOneOutAccuracy(Map<String, List<float[]>> samples) {
+        SampleIndex index = new SampleIndex(samples);
+        int[] rows = new int[1];
+        float[] dist = new float[1];
+        float[] probe = new float[index.dimension()];
+        int correct = 0, probes = 0;
+        for (int row = 0; row < index.size(); row++) {
+            index.copySample(row, probe);
+            if (index.topK(probe, 1, rows, dist, row) == 0) continue;
+            if (index.labelIdAt(rows[0]) == index.labelIdAt(row)) correct++;
+            probes++;
+        }
+        return probes == 0 ? 0f : correct / (float) probes;
+    }
+
+    private static Map<String, List<Bitmap>> loadPhotos(File galleryDir) {
+        Map<String, List<Bitmap>> photos = new HashMap<>();
+        File[] facultyDirs = galleryDir.listFiles(File::isDirectory);
+        if (facultyDirs == null) return photos;
+
+        for (File facultyDir : facultyDirs) {
+            File[] files = facultyDir.listFiles((dir, name) -> name.endsWith(".jpg"));
+            if (files == null || files.length < 2) continue;
+            List<Bitmap> list = new ArrayList<>();
+            for (File f : files) {
+                Bitmap bmp = BitmapFactory.decodeFile(f.getAbsolutePath());
+                if (bmp != null) list.add(bmp);
+            }
+            if (list.size() >= 2) photos.put(facultyDir.getName(), list);
+            else for (Bitmap b : list) b.recycle();
+        }
+        return photos;
+    }
+}
@@ -0,0 +1,124 @@
+package com.sd.facultyfacialrecognition;
+
+import android.graphics.PixelFormat;
+import android.media.Image;
+import android.util.Log;
+
+import java.nio.ByteBuffer;
+import java.util.Locale;
+
+/**
+ * Cheap gate in front of face detection for an idle corridor.
+ *
+ * Each frame's luma is sampled on a coarse grid (about {@link #GRID_LONG_SIDE} samples across)
+ * and compared with the previous frame's grid as a sum of absolute differences. Detection only
+ * runs when that difference passes {@link #MOTION_THRESHOLD}, when a face was in the last
+ * processed frame (someone standing still must still be recognized), or when
+ * {@link #KEEP_ALIVE_MILLIS} passed since the last processed frame. Buffers are reused, so a
+ * gated frame costs a few thousand byte reads and no allocation.
+ */
+public class MotionGate {
+    private static final String TAG = "MotionGate";
+
+    private static final int GRID_LONG_SIDE = 64;
+    // Per-sample differences up to this are sensor noise and don't count
+    private static final int NOISE_FLOOR = 12;
+    // Mean difference above the noise floor, per sample, that counts as motion
+    private static final float MOTION_THRESHOLD = 1.5f;
+    private static final long KEEP_ALIVE_MILLIS = 1000;
+    private static final int STATS_INTERVAL = 300;
+
+    // Only touched from the analyzer thread, except facesPresent
+    private byte[] previous = new byte[0];
+    private byte[] current = new byte[0];
+    private byte[] row = new byte[0];
+    private int gridW, gridH;
+    private boolean hasPrevious;
+    private volatile boolean facesPresent;
+    private long lastProcessedAt;
+
+    private long gatedFrames, processedFrames;
+
+    /** Samples image and decides whether it should go to the detector. */
+    public boolean shouldProcess(Image image, long nowMillis) {
+        boolean moved = sample(image);
+        boolean process = moved || facesPresent || nowMillis - lastProcessedAt >= KEEP_ALIVE_MILLIS;
+
+        if (process) {
+            processedFrames++;
+            lastProcessedAt = nowMillis;
+        } else {
+            gatedFrames++;
+        }
+        if ((processedFrames + gatedFrames) % STATS_INTERVAL == 0) {
+            Log.d(TAG, String.format(Locale.US, "processed %d, gated %d (%.0f%% skipped)",
+                    processedFrames, gatedFrames, 100.0 * gatedFrames / (processedFrames + gatedFrames)));
+        }
+        return process;
+    }
+
+    /** Reports whether the last processed frame had a face; while it does, nothing is gated. */
+    public void setFacesPresent(boolean present) {
+        facesPresent = present;
+    }
+
+    /** Forgets the previous frame, e.g. after the camera was rebound at a new resolution. */
+    public void reset() {
+        hasPrevious = false;
+        facesPresent = false;
+    }
+
+    public long getGatedFrames() {
+        return gatedFrames;
+    }
+
+    public long getProcessedFrames() {
+        return processedFrames;
+    }
+
+    // Fills the current grid and compares it with the previous one; true when it moved
+    private boolean sample(Image image) {
+        int step = Math.max(1, Math.max(image.getWidth(), image.getHeight()) / GRID_LONG_SIDE);
+        int w = image.getWidth() / step;
+        int h = image.getHeight() / step;
+        if (w != gridW || h != gridH) {
+            gridW = w;
+            gridH = h;
+            previous = new byte[w * h];
+            current = new byte[w * h];
+            hasPrevious = false;
+        }
+
+        boolean rgba = image.getFormat() == PixelFormat.RGBA_8888;
+        Image.Plane plane = image.getPlanes()[0];
+        ByteBuffer buffer = plane.getBuffer();
+        int rowStride = plane.getRowStride();
+        int pixelStride = plane.getPixelStride();
+        int rowBytes = (w - 1) * step * pixelStride + (rgba ? 4 : 1);
+        if (row.length < rowBytes) row = new byte[rowBytes];
+
+        long sad = 0;
+        for (int r = 0; r < h; r++) {
+            buffer.position(r * step * rowStride);
+            buffer.get(row, 0, rowBytes);
+            int out = r * w;
+            for (int c = 0; c < w; c++) {
+                int i = c * step * pixelStride;
+                int luma = rgba
+                        ? (77 * (row[i] & 0xff) + 150 * (row[i + 1] & 0xff) + 29 * (row[i + 2] & 0xff)) >> 8
+                        : row[i] & 0xff;
+                current[out + c] = (byte) luma;
+                int d = Math.abs(luma - (previous[out + c] & 0xff)) - NOISE_FLOOR;
+                if (d > 0) sad += d;
+            }
+        }
+        buffer.rewind();
+
+        boolean moved = !hasPrevious || sad > MOTION_THRESHOLD * w * h;
+        byte[] t = previous;
+        previous = current;
+        current = t;
+        hasPrevious = true;
+        return moved;
+    }
+}
@@ -0,0 +1,28 @@
+package com.sd.facultyfacialrecognition;
+
+import androidx.annotation.Nullable;
+
+/**
+ * Who currently occupies the lab, readable at any time without a network round trip.
+ * Implementations keep the value current in the background and tell listeners when it changes.
+ */
+public interface OccupancyCache {
+
+    interface Listener {
+        /** occupant is null when the room is free. Called on the main thread. */
+        void onOccupancyChanged(@Nullable String occupant);
+    }
+
+    /** The faculty holding the room ("In Class" or "Break"), or null if it is free. */
+    @Nullable
+    String getOccupant();
+
+    void addListener(Listener listener);
+
+    void removeListener(Listener listener);
+
+    /** Begins following remote changes. */
+    void start();
+
+    void stop();
+}
@@ -0,0 +1,133 @@
+package com.sd.facultyfacialrecognition;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.util.Log;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Per-faculty index of perceptual hashes (dHash) of every imported source photo, kept in
+ * photo_hashes.txt inside the faculty folder. Import checks it before any face detection, so a
+ * picture that was already imported, or a near-identical copy of it (re-encoded, resized), is
+ * skipped for the cost of decoding a tiny thumbnail. A hash is only recorded once its photo
+ * actually produced a saved face.
+ */
+public class PhotoHashIndex {
+    private static final String TAG = "PhotoHashIndex";
+    public static final String FILE_NAME = "photo_hashes.txt";
+
+    // Differing bits (of 64) still treated as the same picture
+    private static final int MAX_HAMMING_DISTANCE = 6;
+    private static final int THUMB_SIZE = 64;
+
+    private final File file;
+    private final List<Long> hashes = new ArrayList<>();
+    // Hashes of photos still being decoded, detected or reviewed; never written to disk
+    private final List<Long> pending = new ArrayList<>();
+
+    public PhotoHashIndex(File facultyDir) {
+        this.file = new File(facultyDir, FILE_NAME);
+        if (!file.exists()) return;
+        try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                line = line.trim();
+                if (line.isEmpty()) continue;
+                try {
+                    hashes.add(Long.parseUnsignedLong(line, 16));
+                } catch (NumberFormatException ignored) { }
+            }
+        } catch (IOException e) {
+            Log.e(TAG, "Error reading " + FILE_NAME, e);
+        }
+    }
+
+    /**
+     * Claims the hash for an import in flight. Returns false for a duplicate: a matching hash is
+     * already indexed, or another photo of this batch with a matching hash is being imported.
+     * Nothing is written until {@link #finish} reports the photo as imported.
+     */
+    public synchronized boolean claim(long hash) {
+        if (contains(hash)) return false;
+        pending.add(hash);
+        return true;
+    }
+
+    /**
+     * Ends a claim. An imported photo's hash is indexed and appended to disk; a photo that was
+     * not imported (undecodable, no face, blurry, skipped in review) is forgotten so it can be
+     * imported again later. A null hash (bytes that didn't hash) is ignored.
+     */
+    public synchronized void finish(Long hash, boolean imported) {
+        if (hash == null) return;
+        pending.remove(hash);
+        if (!imported) return;
+        hashes.add(hash);
+        try (FileOutputStream fos = new FileOutputStream(file, true)) {
+            fos.write((Long.toHexString(hash) + "\n").getBytes(StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            Log.e(TAG, "Error appending to " + FILE_NAME, e);
+        }
+    }
+
+    /** Whether a matching hash is indexed or claimed. */
+    public synchronized boolean contains(long hash) {
+        for (long h : hashes) {
+            if (Long.bitCount(h ^ hash) <= MAX_HAMMING_DISTANCE) return true;
+        }
+        for (long h : pending) {
+            if (Long.bitCount(h ^ hash) <= MAX_HAMMING_DISTANCE) return true;
+        }
+        return false;
+    }
+
+    public synchronized int size() {
+        return hashes.size();
+    }
+
+    /**
+     * 64-bit difference hash of encoded image bytes: a 9x8 grey thumbnail, one bit per
+     * horizontally adjacent pair. Returns null if the bytes don't decode.
+     */
+    public static Long dHash(byte[] bytes) {
+        BitmapFactory.Options o = new BitmapFactory.Options();
+        o.inJustDecodeBounds = true;
+        BitmapFactory.decodeByteArray(bytes, 0, bytes.length, o);
+        if (o.outWidth <= 0 || o.outHeight <= 0) return null;
+
+        // Decode straight to a small thumbnail; the hash only needs coarse structure
+        int sample = 1;
+        while (Math.min(o.outWidth, o.outHeight) / (sample * 2) >= THUMB_SIZE) sample *= 2;
+        o = new BitmapFactory.Options();
+        o.inSampleSize = sample;
+        Bitmap thumb = BitmapFactory.decodeByteArray(bytes, 0, bytes.length, o);
+        if (thumb == null) return null;
+
+        Bitmap tiny = Bitmap.createScaledBitmap(thumb, 9, 8, true);
+        int[] px = new int[9 * 8];
+        tiny.getPixels(px, 0, 9, 0, 0, 9, 8);
+        if (tiny != thumb) tiny.recycle();
+        thumb.recycle();
+
+        long hash = 0;
+        for (int y = 0; y < 8; y++) {
+            for (int x = 0; x < 8; x++) {
+                hash <<= 1;
+                if (luma(px[y * 9 + x]) > luma(px[y * 9 + x + 1])) hash |= 1;
+            }
+        }
+        return hash;
+    }
+
+    private static int luma(int c) {
+        return (77 * ((c >> 16) & 0xff) + 150 * ((c >> 8) & 0xff) + 29 * (c & 0xff)) >> 8;
+    }
+}
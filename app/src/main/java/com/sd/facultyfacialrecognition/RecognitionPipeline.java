@@ -0,0 +1,123 @@
+package com.sd.facultyfacialrecognition;
+
+import android.util.Log;
+
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+/**
+ * Second stage of the live pipeline: recognition (align, embed, match) on its own thread.
+ *
+ * The detection stage submits each detected frame and is free to close the camera image and
+ * start on the next frame right away, so detection of frame N+1 overlaps recognition of frame N
+ * and throughput approaches the slower stage instead of the sum of both. Frames are handed over
+ * through a single "latest frame" slot: when recognition falls behind, a new frame replaces the
+ * one still waiting, which is dropped (its pooled bitmap released), so recognition always starts
+ * on the freshest frame instead of working through stale ones.
+ *
+ * Each stage's occupancy (busy time / wall time) is logged every {@link #STATS_INTERVAL} frames;
+ * the stage near 100% is the bottleneck.
+ */
+public class RecognitionPipeline {
+    private static final String TAG = "RecognitionPipeline";
+
+    private static final int STATS_INTERVAL = 100;
+
+    private final AtomicReference<CascadeFaceDetector.Result> latest = new AtomicReference<>();
+    private final ExecutorService recognitionExecutor = Executors.newSingleThreadExecutor();
+    private final AtomicBoolean drainScheduled = new AtomicBoolean(false);
+    private final Consumer<CascadeFaceDetector.Result> recognizer;
+
+    // Written by submit, on the main thread, only
+    private volatile long detectBusyNanos;
+    private volatile long submitted, dropped;
+    // Written by the consumer (recognition) side only
+    private long recognizeBusyNanos;
+    private long recognized;
+    private long windowStart = System.nanoTime();
+    private long windowDetectBusy, windowRecognizeBusy;
+
+    /** recognizer runs on the recognition thread; the pipeline releases each result after it. */
+    public RecognitionPipeline(Consumer<CascadeFaceDetector.Result> recognizer) {
+        this.recognizer = recognizer;
+    }
+
+    /**
+     * Detection side: hands over a detected frame, whose ownership passes to the pipeline.
+     * detectNanos is how long detecting it took, for the occupancy metric. Runs on the main
+     * thread: MainActivity calls it from the ML Kit success listener, which is registered
+     * without an executor.
+     */
+    public void submit(CascadeFaceDetector.Result result, long detectNanos) {
+        detectBusyNanos += detectNanos;
+        submitted++;
+        if (recognitionExecutor.isShutdown()) {
+            dropped++;
+            result.release();
+            return;
+        }
+        CascadeFaceDetector.Result stale = latest.getAndSet(result);
+        if (stale != null) {
+            // Recognition never got to it; the new frame supersedes it
+            dropped++;
+            stale.release();
+        }
+        if (drainScheduled.compareAndSet(false, true)) {
+            recognitionExecutor.execute(this::drain);
+        }
+    }
+
+    private void drain() {
+        while (true) {
+            CascadeFaceDetector.Result result;
+            while ((result = latest.getAndSet(null)) != null) {
+                long start = System.nanoTime();
+                try {
+                    recognizer.accept(result);
+                } catch (Exception e) {
+                    Log.e(TAG, "Recognition failed", e);
+                } finally {
+                    result.release();
+                }
+                recognizeBusyNanos += System.nanoTime() - start;
+                if (++recognized % STATS_INTERVAL == 0) logOccupancy();
+            }
+            drainScheduled.set(false);
+            // A frame offered between the last poll and clearing the flag would otherwise wait
+            if (latest.get() == null || !drainScheduled.compareAndSet(false, true)) return;
+        }
+    }
+
+    private void logOccupancy() {
+        long now = System.nanoTime();
+        long elapsed = Math.max(1, now - windowStart);
+        long detectBusy = detectBusyNanos;
+        Log.d(TAG, String.format(Locale.US,
+                "occupancy: detect %.0f%%, recognize %.0f%% | %d frames submitted, %d dropped, %d recognized",
+                100.0 * (detectBusy - windowDetectBusy) / elapsed,
+                100.0 * (recognizeBusyNanos - windowRecognizeBusy) / elapsed,
+                submitted, dropped, recognized));
+        windowStart = now;
+        windowDetectBusy = detectBusy;
+        windowRecognizeBusy = recognizeBusyNanos;
+    }
+
+    // Consumer side only
+    private void releaseWaiting() {
+        CascadeFaceDetector.Result result = latest.getAndSet(null);
+        if (result != null) result.release();
+    }
+
+    /**
+     * Stops the recognition thread once the frame in progress is done; a frame still waiting and
+     * later submits are released right away. Call from the main thread, like {@link #submit}.
+     */
+    public void shutdown() {
+        recognitionExecutor.execute(this::releaseWaiting);
+        recognitionExecutor.shutdown();
+    }
+}
@@ -0,0 +1,102 @@
+package com.sd.facultyfacialrecognition;
+
+import android.graphics.Rect;
+
+/**
+ * Predicts where the single tracked face will be in the next frame, so detection can look at a
+ * small region instead of the whole sensor.
+ *
+ * Constant-velocity model over the last {@link #HISTORY} boxes: the predicted box keeps the last
+ * box's size and moves its centre by the average velocity, then grows by {@link #MARGIN} on every
+ * side to absorb acceleration. The track also keeps one id across ROI and full-frame passes, so
+ * evidence is not reset just because the detector saw a different input size.
+ *
+ * Coordinates are upright full-resolution frame coordinates. Not thread-safe; used from the
+ * analyzer thread only.
+ */
+public class RoiTracker {
+    private static final int HISTORY = 3;
+    // Extra room on each side, as a fraction of the face size
+    private static final float MARGIN = 0.5f;
+    // A track not updated for this long is too stale to predict from
+    private static final long MAX_AGE_MILLIS = 400;
+    // Full-frame pass at least this often, so a second person walking in is noticed
+    private static final int FULL_FRAME_INTERVAL = 10;
+
+    private final float[] centerX = new float[HISTORY];
+    private final float[] centerY = new float[HISTORY];
+    private final long[] times = new long[HISTORY];
+    private int count = 0;
+    private int lastWidth, lastHeight;
+    private Integer trackingId;
+    private int framesSinceFull = 0;
+
+    /**
+     * Region to search in the next frame, clipped to the frame, or null when a full-frame pass
+     * is due (no track, stale track, or periodic refresh).
+     */
+    public Rect predict(long nowMillis, int frameWidth, int frameHeight) {
+        if (count == 0 || nowMillis - times[count - 1] > MAX_AGE_MILLIS || framesSinceFull >= FULL_FRAME_INTERVAL) {
+            return null;
+        }
+
+        float vx = 0f, vy = 0f;
+        if (count > 1) {
+            long dt = times[count - 1] - times[0];
+            if (dt > 0) {
+                vx = (centerX[count - 1] - centerX[0]) / dt;
+                vy = (centerY[count - 1] - centerY[0]) / dt;
+            }
+        }
+        long ahead = nowMillis - times[count - 1];
+        float cx = centerX[count - 1] + vx * ahead;
+        float cy = centerY[count - 1] + vy * ahead;
+
+        float halfW = lastWidth * (0.5f + MARGIN);
+        float halfH = lastHeight * (0.5f + MARGIN);
+        Rect roi = new Rect(Math.round(cx - halfW), Math.round(cy - halfH), Math.round(cx + halfW), Math.round(cy + halfH));
+        if (!roi.intersect(0, 0, frameWidth, frameHeight)) return null;
+        return roi;
+    }
+
+    /**
+     * Records where the face was found. fullFrame tells whether the whole frame was searched.
+     * Returns the id to report for the face: the track's id while the face continues the track.
+     */
+    public Integer update(Rect box, Integer detectorId, long nowMillis, boolean fullFrame) {
+        if (fullFrame) framesSinceFull = 0;
+        else framesSinceFull++;
+
+        // A box far from the track is someone else (or a re-acquired face); start over
+        if (count > 0 && !continuesTrack(box)) count = 0;
+        if (count == 0) trackingId = detectorId;
+
+        if (count == HISTORY) {
+            System.arraycopy(centerX, 1, centerX, 0, HISTORY - 1);
+            System.arraycopy(centerY, 1, centerY, 0, HISTORY - 1);
+            System.arraycopy(times, 1, times, 0, HISTORY - 1);
+            count--;
+        }
+        centerX[count] = box.exactCenterX();
+        centerY[count] = box.exactCenterY();
+        times[count] = nowMillis;
+        count++;
+        lastWidth = box.width();
+        lastHeight = box.height();
+        return trackingId;
+    }
+
+    /** No single face this frame; the next frame is searched in full. */
+    public void reset() {
+        count = 0;
+        trackingId = null;
+        framesSinceFull = 0;
+    }
+
+    private boolean continuesTrack(Rect box) {
+        float dx = box.exactCenterX() - centerX[count - 1];
+        float dy = box.exactCenterY() - centerY[count - 1];
+        float reach = Math.max(lastWidth, lastHeight);
+        return dx * dx + dy * dy <= reach * reach;
+    }
+}
@@ -0,0 +1,147 @@
+package com.sd.facultyfacialrecognition;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Flat, contiguous copy of every enrolled embedding so a probe can be compared against all
+ * samples in a single linear pass. Top-k selection keeps only k candidates at any time.
+ * {@link #topKBatch} serves several probes in that same single pass over the samples.
+ */
+public class SampleIndex {
+
+    private final float[] data;
+    private final int[] labelIds;
+    private final String[] labels;
+    private final int dim;
+    private final int size;
+
+    public SampleIndex(Map<String, List<float[]>> samples) {
+        // The first sample fixes the dimension; samples of any other size are left out entirely
+        int d = 0;
+        for (List<float[]> list : samples.values()) {
+            if (list != null && !list.isEmpty()) {
+                d = list.get(0).length;
+                break;
+            }
+        }
+
+        List<String> names = new ArrayList<>();
+        int count = 0;
+        for (Map.Entry<String, List<float[]>> entry : samples.entrySet()) {
+            if (entry.getValue() == null) continue;
+            int matching = 0;
+            for (float[] emb : entry.getValue()) {
+                if (emb != null && emb.length == d) matching++;
+            }
+            if (matching == 0) continue;
+            names.add(entry.getKey());
+            count += matching;
+        }
+
+        dim = d;
+        size = count;
+        data = new float[count * d];
+        labelIds = new int[count];
+        labels = names.toArray(new String[0]);
+
+        int row = 0;
+        for (int id = 0; id < labels.length; id++) {
+            for (float[] emb : samples.get(labels[id])) {
+                if (emb == null || emb.length != dim) continue;
+                System.arraycopy(emb, 0, data, row * dim, dim);
+                labelIds[row] = id;
+                row++;
+            }
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int dimension() {
+        return dim;
+    }
+
+    public String labelAt(int row) {
+        return labels[labelIds[row]];
+    }
+
+    public String[] labels() {
+        return labels;
+    }
+
+    public int labelIdAt(int row) {
+        return labelIds[row];
+    }
+
+    public void copySample(int row, float[] out) {
+        System.arraycopy(data, row * dim, out, 0, dim);
+    }
+
+    /**
+     * Fills outRows/outDist with the k nearest samples (Euclidean), closest first.
+     * Returns how many neighbours were found. excludeRow is skipped (-1 for none).
+     */
+    public int topK(float[] query, int k, int[] outRows, float[] outDist, int excludeRow) {
+        if (query == null || query.length != dim || k <= 0) return 0;
+
+        int found = 0;
+        for (int row = 0; row < size; row++) {
+            if (row == excludeRow) continue;
+            found = insert(squaredDistance(query, row), row, k, outRows, outDist, found);
+        }
+
+        for (int i = 0; i < found; i++) outDist[i] = (float) Math.sqrt(outDist[i]);
+        return found;
+    }
+
+    /**
+     * {@link #topK} for several probes at once: each sample row is read once and compared with
+     * every probe while it is in cache. outFound[q] receives how many neighbours probe q has;
+     * null or wrong-sized probes get none.
+     */
+    public void topKBatch(float[][] queries, int k, int[][] outRows, float[][] outDist, int[] outFound) {
+        int n = queries.length;
+        for (int q = 0; q < n; q++) outFound[q] = 0;
+        if (k <= 0) return;
+
+        for (int row = 0; row < size; row++) {
+            for (int q = 0; q < n; q++) {
+                float[] query = queries[q];
+                if (query == null || query.length != dim) continue;
+                outFound[q] = insert(squaredDistance(query, row), row, k, outRows[q], outDist[q], outFound[q]);
+            }
+        }
+
+        for (int q = 0; q < n; q++) {
+            for (int i = 0; i < outFound[q]; i++) outDist[q][i] = (float) Math.sqrt(outDist[q][i]);
+        }
+    }
+
+    private float squaredDistance(float[] query, int row) {
+        int base = row * dim;
+        float sum = 0f;
+        for (int i = 0; i < dim; i++) {
+            float diff = query[i] - data[base + i];
+            sum += diff * diff;
+        }
+        return sum;
+    }
+
+    // Bounded insertion: the list never grows past k. Returns the new count.
+    private static int insert(float sum, int row, int k, int[] outRows, float[] outDist, int found) {
+        if (found == k && sum >= outDist[k - 1]) return found;
+        int pos = found < k ? found++ : k - 1;
+        while (pos > 0 && outDist[pos - 1] > sum) {
+            outDist[pos] = outDist[pos - 1];
+            outRows[pos] = outRows[pos - 1];
+            pos--;
+        }
+        outDist[pos] = sum;
+        outRows[pos] = row;
+        return found;
+    }
+}
@@ -0,0 +1,143 @@
+package com.sd.facultyfacialrecognition;
+
+import android.util.Log;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Folds embeddings from confirmed sessions into each faculty's template, so the gallery follows
+ * slow changes in appearance (haircut, glasses, season) without re-enrollment.
+ *
+ * Recognition offers every probe with its best match; once the professor confirms the lock or
+ * unlock, {@link #commit} keeps only confident probes of the confirmed name and moves the
+ * template toward their mean. The update is a running mean whose weight is capped at
+ * {@link #MAX_WEIGHT}, so no single session moves the template much and old looks fade out.
+ * The template never strays more than {@link #MAX_DRIFT} from the enrolled photos, and an update
+ * that would bring it closer to someone else is dropped.
+ */
+public class TemplateAdapter {
+    private static final String TAG = "TemplateAdapter";
+
+    // Probes must be this close to the confirmed template, and this far ahead of the runner-up
+    private static final float MAX_PROBE_DISTANCE = 0.70f;
+    private static final float MIN_MARGIN = 0.15f;
+    // Fewer confident probes than this in a session is too little to learn from
+    private static final int MIN_SESSION_PROBES = 3;
+    private static final int MAX_SESSION_PROBES = 32;
+    // Cap on the running-mean weight; a session of n probes moves the template by at least n/(MAX_WEIGHT+n)
+    private static final int MAX_WEIGHT = 20;
+    // Maximum L2 distance of the template from the centroid of the enrolled photos
+    private static final float MAX_DRIFT = 0.35f;
+
+    private final GalleryStore store;
+    private final ArrayDeque<Probe> session = new ArrayDeque<>();
+
+    public TemplateAdapter(GalleryStore store) {
+        this.store = store;
+    }
+
+    /**
+     * One probe of the current session. ranking is the frame's best-first match list; the probe
+     * is kept only if its leader is confident. The embedding is copied.
+     */
+    public synchronized void offer(float[] emb, List<FaceMatcher.Match> ranking) {
+        if (emb == null || ranking == null || ranking.isEmpty()) return;
+        FaceMatcher.Match best = ranking.get(0);
+        if ("Unknown".equals(best.name) || best.distance > MAX_PROBE_DISTANCE) return;
+        if (ranking.size() > 1 && ranking.get(1).distance - best.distance < MIN_MARGIN) return;
+
+        if (session.size() == MAX_SESSION_PROBES) session.pollFirst();
+        session.addLast(new Probe(best.name, emb.clone()));
+    }
+
+    /** Forgets the current session, e.g. when the professor answers No. */
+    public synchronized void clear() {
+        session.clear();
+    }
+
+    /**
+     * The professor confirmed name: adapts their template from this session's probes and
+     * persists it in the background. The session is cleared either way.
+     */
+    public void commit(String name, FaceGallery gallery) {
+        List<float[]> probes = new ArrayList<>();
+        synchronized (this) {
+            for (Probe p : session) {
+                if (p.name.equals(name)) probes.add(p.embedding);
+            }
+            session.clear();
+        }
+        if (name == null || probes.size() < MIN_SESSION_PROBES) return;
+
+        new Thread(() -> {
+            try {
+                GalleryStore.Adaptation adapted = adapt(name, probes, gallery);
+                if (adapted == null) return;
+                store.putAdaptation(name, adapted);
+                if (store.needsCompaction()) store.compact();
+                Log.d(TAG, "Adapted " + name + " from " + probes.size() + " probes (weight " + adapted.weight + ")");
+            } catch (Exception e) {
+                Log.e(TAG, "Template adaptation failed for " + name, e);
+            }
+        }).start();
+    }
+
+    // New template for name, or null if the session must not be learned from
+    private GalleryStore.Adaptation adapt(String name, List<float[]> probes, FaceGallery gallery) {
+        float[] anchor = gallery.getEnrolledCentroid(name);
+        // The store must hold this gallery's model; bundled galleries have nothing to adapt
+        if (anchor == null || !store.exists() || !store.readModelInfo().matches(gallery.getModel())) return null;
+        for (float[] p : probes) {
+            if (p.length != anchor.length) return null;
+        }
+
+        GalleryStore.Adaptation previous = gallery.getAdaptation(name);
+        float[] template = previous != null ? previous.embedding : anchor;
+        int weight = previous != null ? previous.weight : Math.min(gallery.enrolledSampleCount(name), MAX_WEIGHT);
+
+        float[] mean = FaceGallery.average(probes);
+        int n = probes.size();
+        float[] updated = new float[template.length];
+        for (int i = 0; i < updated.length; i++) {
+            updated[i] = (template[i] * weight + mean[i] * n) / (weight + n);
+        }
+
+        // Pull the template back onto the drift boundary around the enrolled photos
+        float drift = FaceNet.distance(updated, anchor);
+        if (drift > MAX_DRIFT) {
+            float scale = MAX_DRIFT / drift;
+            for (int i = 0; i < updated.length; i++) {
+                updated[i] = anchor[i] + (updated[i] - anchor[i]) * scale;
+            }
+        }
+
+        // Never let a template wander toward another faculty
+        float own = FaceNet.distance(updated, anchor);
+        for (Map.Entry<String, float[]> other : gallery.getCentroids().entrySet()) {
+            if (other.getKey().equals(name)) continue;
+            if (FaceNet.distance(updated, other.getValue()) <= own) {
+                Log.w(TAG, "Not adapting " + name + ": template would move toward " + other.getKey());
+                return null;
+            }
+        }
+
+        GalleryStore.Adaptation adapted = new GalleryStore.Adaptation();
+        adapted.embedding = updated;
+        adapted.weight = Math.min(weight + n, MAX_WEIGHT);
+        adapted.updatedAt = System.currentTimeMillis();
+        return adapted;
+    }
+
+    private static class Probe {
+        final String name;
+        final float[] embedding;
+
+        Probe(String name, float[] embedding) {
+            this.name = name;
+            this.embedding = embedding;
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package com.sd.facultyfacialrecognition;
+
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Searches a small hot tier (faculty scheduled in this lab around now) first and only falls back
+ * to the full cold gallery when the hot tier has no confident match.
+ *
+ * A hot answer never stands alone: the closest identity outside the hot tier (Unknown included)
+ * is found with a cheap centroid pass and joins the ranking as a runner-up, so the margin checks
+ * downstream still see how far ahead the scheduled professor is of a lookalike. When that
+ * outsider is at least as close as the hot best, the hot answer is dropped and the full gallery
+ * is searched.
+ */
+public class TieredMatcher {
+    private static final String TAG = "TieredMatcher";
+
+    // A hot-tier best match at or below this distance is accepted without searching the rest
+    public static final float HOT_ACCEPT_DISTANCE = 0.80f;
+    private static final int STATS_INTERVAL = 100;
+
+    private final FaceMatcher hot;
+    private final FaceMatcher cold;
+    private final Set<String> hotNames;
+
+    private int hotHits, coldSearches;
+
+    /** hot may be null when nobody is scheduled; every search then goes to cold. */
+    public TieredMatcher(FaceMatcher hot, Set<String> hotNames, FaceMatcher cold) {
+        this.hot = hot;
+        this.hotNames = hot != null ? hotNames : Collections.emptySet();
+        this.cold = cold;
+    }
+
+    public FaceMatcher getCold() {
+        return cold;
+    }
+
+    public int getHotSize() {
+        return hotNames.size();
+    }
+
+    /** Best match first, from whichever tier answered. */
+    public List<FaceMatcher.Match> rank(float[] emb) {
+        if (hot != null) {
+            List<FaceMatcher.Match> answer = withRunnerUp(emb, hot.rank(emb));
+            if (answer != null) {
+                record(true);
+                return answer;
+            }
+        }
+        record(false);
+        return cold.rank(emb);
+    }
+
+    /** {@link #rank} for several probes; those the hot tier can't settle share one cold pass. */
+    public List<List<FaceMatcher.Match>> rankAll(List<float[]> embs) {
+        List<List<FaceMatcher.Match>> out = new ArrayList<>(embs.size());
+        List<List<FaceMatcher.Match>> hotRankings = hot != null ? hot.rankAll(embs) : null;
+
+        List<float[]> coldProbes = new ArrayList<>();
+        List<Integer> coldSlots = new ArrayList<>();
+        for (int i = 0; i < embs.size(); i++) {
+            List<FaceMatcher.Match> answer = hotRankings != null ? withRunnerUp(embs.get(i), hotRankings.get(i)) : null;
+            out.add(answer);
+            if (answer != null) {
+                record(true);
+            } else {
+                record(false);
+                coldProbes.add(embs.get(i));
+                coldSlots.add(i);
+            }
+        }
+        if (!coldProbes.isEmpty()) {
+            List<List<FaceMatcher.Match>> coldRankings = cold.rankAll(coldProbes);
+            for (int j = 0; j < coldSlots.size(); j++) out.set(coldSlots.get(j), coldRankings.get(j));
+        }
+        return out;
+    }
+
+    /**
+     * The hot ranking with the closest identity outside the hot tier added, or null when the hot
+     * tier can't answer: no confident best, or someone outside it is at least as close.
+     */
+    private List<FaceMatcher.Match> withRunnerUp(float[] emb, List<FaceMatcher.Match> hotRanking) {
+        if (emb == null || hotRanking == null || hotRanking.isEmpty()) return null;
+        FaceMatcher.Match best = hotRanking.get(0);
+        if (best.distance > HOT_ACCEPT_DISTANCE) return null;
+
+        FaceMatcher.Match outsider = null;
+        for (FaceMatcher.Match m : cold.rankCentroid(emb)) {
+            if (!hotNames.contains(m.name)) {
+                outsider = m;
+                break;
+            }
+        }
+        if (outsider == null) return hotRanking;
+        if (outsider.distance <= best.distance) return null;
+
+        List<FaceMatcher.Match> ranking = new ArrayList<>(hotRanking.size() + 1);
+        ranking.add(best);
+        List<FaceMatcher.Match> rest = new ArrayList<>(hotRanking.subList(1, hotRanking.size()));
+        rest.add(outsider);
+        rest.sort((a, b) -> Float.compare(a.distance, b.distance));
+        ranking.addAll(rest);
+        return ranking;
+    }
+
+    private synchronized void record(boolean hotHit) {
+        if (hotHit) hotHits++;
+        else coldSearches++;
+        int total = hotHits + coldSearches;
+        if (total % STATS_INTERVAL == 0) {
+            Log.d(TAG, String.format(Locale.US, "hot tier (%d identities) answered %d/%d searches",
+                    hotNames.size(), hotHits, total));
+        }
+    }
+}
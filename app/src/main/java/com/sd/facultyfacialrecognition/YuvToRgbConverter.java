@@ -18,19 +18,27 @@ public class YuvToRgbConverter {
     private ScriptIntrinsicYuvToRGB scriptYuvToRgb;
     private Type.Builder yuvType, rgbaType;
     private Allocation in, out;
+    private byte[] nv21;
+    private int width, height;
 
     public YuvToRgbConverter(Context context) {
         rs = RenderScript.create(context);
     }
 
-    public void yuvToRgb(Image image, Bitmap output) {
+    public boolean matches(int width, int height) {
+        return yuvType == null || (this.width == width && this.height == height);
+    }
+
+    public synchronized void yuvToRgb(Image image, Bitmap output) {
         if (scriptYuvToRgb == null) {
             scriptYuvToRgb = ScriptIntrinsicYuvToRGB.create(rs, Element.U8_4(rs));
         }
 
-        byte[] nv21 = yuv420ToNv21(image);
+        nv21 = yuv420ToNv21(image, nv21);
 
         if (yuvType == null) {
+            width = image.getWidth();
+            height = image.getHeight();
             yuvType = new Type.Builder(rs, Element.U8(rs)).setX(nv21.length);
             in = Allocation.createTyped(rs, yuvType.create(), Allocation.USAGE_SCRIPT);
 
@@ -46,7 +54,18 @@ public class YuvToRgbConverter {
         out.copyTo(output);
     }
 
-    private byte[] yuv420ToNv21(Image image) {
+    /** Frees the RenderScript context and allocations; the converter must not be used afterwards. */
+    public synchronized void destroy() {
+        if (in != null) in.destroy();
+        if (out != null) out.destroy();
+        if (scriptYuvToRgb != null) scriptYuvToRgb.destroy();
+        rs.destroy();
+        in = out = null;
+        scriptYuvToRgb = null;
+    }
+
+    // Reuses the previous frame's buffer when the plane sizes haven't changed
+    private byte[] yuv420ToNv21(Image image, byte[] reuse) {
         ByteBuffer yBuffer = image.getPlanes()[0].getBuffer();
         ByteBuffer uBuffer = image.getPlanes()[1].getBuffer();
         ByteBuffer vBuffer = image.getPlanes()[2].getBuffer();
@@ -55,7 +74,8 @@ public class YuvToRgbConverter {
         int uSize = uBuffer.remaining();
         int vSize = vBuffer.remaining();
 
-        byte[] nv21 = new byte[ySize + uSize + vSize];
+        byte[] nv21 = reuse != null && reuse.length == ySize + uSize + vSize
+                ? reuse : new byte[ySize + uSize + vSize];
 
         yBuffer.get(nv21, 0, ySize);
         vBuffer.get(nv21, ySize, vSize);
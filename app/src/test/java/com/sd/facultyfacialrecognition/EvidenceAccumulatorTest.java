@@ -0,0 +1,77 @@
+package com.sd.facultyfacialrecognition;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * EvidenceAccumulator decisions in identification and verification mode.
+ */
+public class EvidenceAccumulatorTest {
+
+    private static List<FaceMatcher.Match> ranking(String first, float d1, String second, float d2) {
+        return Arrays.asList(new FaceMatcher.Match(first, d1, 1), new FaceMatcher.Match(second, d2, 1));
+    }
+
+    @Test
+    public void clearLeader_isDecided() {
+        EvidenceAccumulator evidence = new EvidenceAccumulator();
+        for (int i = 0; i < 10; i++) {
+            evidence.update(1, ranking("a", 0.6f, "b", 1.1f), i * 100L);
+        }
+        assertTrue(evidence.isDecided());
+        assertEquals("a", evidence.getDecision());
+    }
+
+    @Test
+    public void singleFrame_isNotEnough() {
+        EvidenceAccumulator evidence = new EvidenceAccumulator();
+        evidence.update(1, ranking("a", 0.6f, "b", 1.1f), 0L);
+        assertFalse(evidence.isDecided());
+        assertEquals("a", evidence.getLeader());
+    }
+
+    @Test
+    public void lookalikes_areNeverDecided() {
+        // Both are close to the probe, with almost no margin between them
+        EvidenceAccumulator evidence = new EvidenceAccumulator();
+        for (int i = 0; i < 50; i++) {
+            List<FaceMatcher.Match> frame = i % 2 == 0
+                    ? ranking("a", 0.55f, "b", 0.57f)
+                    : ranking("b", 0.55f, "a", 0.57f);
+            evidence.update(1, frame, i * 100L);
+        }
+        assertFalse(evidence.isDecided());
+
+        EvidenceAccumulator steady = new EvidenceAccumulator();
+        for (int i = 0; i < 50; i++) {
+            steady.update(1, ranking("a", 0.55f, "b", 0.57f), i * 100L);
+        }
+        assertFalse(steady.isDecided());
+    }
+
+    @Test
+    public void newTrack_restartsEvidence() {
+        EvidenceAccumulator evidence = new EvidenceAccumulator();
+        for (int i = 0; i < 10; i++) {
+            evidence.update(1, ranking("a", 0.6f, "b", 1.1f), i * 100L);
+        }
+        evidence.update(2, null, 1000L);
+        assertFalse(evidence.isDecided());
+        assertFalse(evidence.hasEvidence());
+    }
+
+    @Test
+    public void verification_decidesOnDistanceAlone() {
+        EvidenceAccumulator evidence = new EvidenceAccumulator();
+        evidence.setVerifying(true);
+        List<FaceMatcher.Match> single = Collections.singletonList(new FaceMatcher.Match("a", 0.6f, 1));
+        for (int i = 0; i < 10; i++) evidence.update(1, single, i * 100L);
+        assertTrue(evidence.isDecided());
+        assertEquals("a", evidence.getDecision());
+    }
+}
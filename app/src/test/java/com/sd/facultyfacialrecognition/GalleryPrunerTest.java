@@ -0,0 +1,86 @@
+package com.sd.facultyfacialrecognition;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * GalleryPruner outlier, duplicate and k-medoids steps on small 2-d galleries.
+ */
+public class GalleryPrunerTest {
+
+    // Five samples at least 0.28 apart, centred on (0.2, 0.2)
+    private static List<float[]> cluster() {
+        return new ArrayList<>(Arrays.asList(
+                new float[]{0f, 0f},
+                new float[]{0.4f, 0f},
+                new float[]{0f, 0.4f},
+                new float[]{0.4f, 0.4f},
+                new float[]{0.2f, 0.2f}));
+    }
+
+    @Test
+    public void emptyInput_keepsNothing() {
+        GalleryPruner.Result result = GalleryPruner.prune(Collections.emptyList(), 5);
+        assertEquals(0, result.input);
+        assertTrue(result.kept.isEmpty());
+    }
+
+    @Test
+    public void smallGallery_isKeptAsIs() {
+        List<float[]> samples = cluster();
+        GalleryPruner.Result result = GalleryPruner.prune(samples, 10);
+
+        assertEquals(5, result.kept.size());
+        assertEquals(0, result.removed());
+    }
+
+    @Test
+    public void nearDuplicate_isDropped() {
+        List<float[]> samples = cluster();
+        samples.add(new float[]{0.41f, 0.01f});
+
+        GalleryPruner.Result result = GalleryPruner.prune(samples, 10);
+
+        assertEquals(1, result.duplicates);
+        assertEquals(5, result.kept.size());
+        // First one wins
+        assertFalse(result.kept.contains(samples.get(5)));
+        assertTrue(result.kept.contains(samples.get(1)));
+    }
+
+    @Test
+    public void farOutlier_isDropped() {
+        List<float[]> samples = cluster();
+        float[] outlier = {2f, 2f};
+        samples.add(outlier);
+
+        GalleryPruner.Result result = GalleryPruner.prune(samples, 10);
+
+        assertEquals(1, result.outliers);
+        assertEquals(5, result.kept.size());
+        assertFalse(result.kept.contains(outlier));
+    }
+
+    @Test
+    public void kMedoids_capsRepresentatives() {
+        GalleryPruner.Result result = GalleryPruner.prune(cluster(), 2);
+
+        assertEquals(2, result.kept.size());
+        assertEquals(3, result.merged);
+        assertEquals(3, result.removed());
+        // Every representative is one of the input samples
+        for (float[] kept : result.kept) {
+            boolean found = false;
+            for (float[] s : cluster()) {
+                if (Arrays.equals(s, kept)) found = true;
+            }
+            assertTrue(found);
+        }
+    }
+}
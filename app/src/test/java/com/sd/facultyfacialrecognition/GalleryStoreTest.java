@@ -0,0 +1,146 @@
+package com.sd.facultyfacialrecognition;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+/**
+ * GalleryStore base file, journal replay and adapted templates, on a temporary folder.
+ */
+public class GalleryStoreTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File dir;
+    private GalleryStore store;
+
+    @Before
+    public void setUp() {
+        dir = folder.getRoot();
+        store = new GalleryStore(dir);
+    }
+
+    private static Map<String, List<float[]>> gallery(String... names) {
+        Map<String, List<float[]>> all = new HashMap<>();
+        for (int i = 0; i < names.length; i++) {
+            all.put(names[i], Arrays.asList(new float[]{i, 1f}, new float[]{i, 2f}));
+        }
+        return all;
+    }
+
+    private static GalleryStore.Adaptation adaptation(float x) {
+        GalleryStore.Adaptation a = new GalleryStore.Adaptation();
+        a.embedding = new float[]{x, x};
+        a.weight = 5;
+        a.updatedAt = 1000L;
+        return a;
+    }
+
+    @Test
+    public void readAll_isNullWithoutGallery() throws Exception {
+        assertFalse(store.exists());
+        assertNull(store.readAll());
+    }
+
+    @Test
+    public void writeAll_roundTrips() throws Exception {
+        store.writeAll(gallery("a", "b"), EmbeddingModel.Spec.FACENET);
+
+        Map<String, List<float[]>> read = new GalleryStore(dir).readAll();
+        assertEquals(new HashSet<>(Arrays.asList("a", "b")), read.keySet());
+        assertEquals(2, read.get("b").size());
+        assertArrayEquals(new float[]{1f, 2f}, read.get("b").get(1), 0f);
+    }
+
+    @Test
+    public void delete_isReplayedFromJournal() throws Exception {
+        store.writeAll(gallery("a", "b"), EmbeddingModel.Spec.FACENET);
+        store.delete("b");
+
+        // A fresh instance sees the tombstone without the base being rewritten
+        Map<String, List<float[]>> read = new GalleryStore(dir).readAll();
+        assertEquals(Collections.singleton("a"), read.keySet());
+        assertTrue(new File(dir, GalleryStore.JOURNAL_FILE).exists());
+    }
+
+    @Test
+    public void putAdaptation_isReplayedFromJournal() throws Exception {
+        store.writeAll(gallery("a", "b"), EmbeddingModel.Spec.FACENET);
+        store.putAdaptation("a", adaptation(0.5f));
+
+        Map<String, GalleryStore.Adaptation> adapted = new GalleryStore(dir).readAdaptations();
+        assertEquals(Collections.singleton("a"), adapted.keySet());
+        assertArrayEquals(new float[]{0.5f, 0.5f}, adapted.get("a").embedding, 0f);
+        assertEquals(5, adapted.get("a").weight);
+    }
+
+    @Test
+    public void freshEnrollment_dropsAdaptations() throws Exception {
+        store.writeAll(gallery("a", "b"), EmbeddingModel.Spec.FACENET);
+        store.putAdaptation("a", adaptation(0.5f));
+        store.compact();
+        store.putAdaptation("b", adaptation(0.7f));
+
+        // One adaptation is in the adapted file, the other only in the journal; neither survives
+        store.writeAll(gallery("a", "b"), EmbeddingModel.Spec.FACENET);
+
+        assertTrue(store.readAdaptations().isEmpty());
+        assertFalse(new File(dir, GalleryStore.ADAPTED_FILE).exists());
+        assertFalse(new File(dir, GalleryStore.JOURNAL_FILE).exists());
+    }
+
+    @Test
+    public void compact_foldsJournalAndKeepsAdaptationsOfRemainingFaculty() throws Exception {
+        store.writeAll(gallery("a", "b"), EmbeddingModel.Spec.FACENET);
+        store.putAdaptation("a", adaptation(0.5f));
+        store.putAdaptation("b", adaptation(0.7f));
+        store.delete("b");
+
+        store.compact();
+
+        assertFalse(new File(dir, GalleryStore.JOURNAL_FILE).exists());
+        assertFalse(store.needsCompaction());
+        GalleryStore reopened = new GalleryStore(dir);
+        assertEquals(Collections.singleton("a"), reopened.readAll().keySet());
+        Map<String, GalleryStore.Adaptation> adapted = reopened.readAdaptations();
+        assertEquals(Collections.singleton("a"), adapted.keySet());
+        assertArrayEquals(new float[]{0.5f, 0.5f}, adapted.get("a").embedding, 0f);
+    }
+
+    @Test
+    public void needsCompaction_afterManyAppends() throws Exception {
+        store.writeAll(gallery("a"), EmbeddingModel.Spec.FACENET);
+        assertFalse(store.needsCompaction());
+        for (int i = 0; i < 32; i++) store.putAdaptation("a", adaptation(i));
+        assertTrue(store.needsCompaction());
+    }
+
+    @Test
+    public void readModelInfo_defaultsToFaceNetForLegacyGallery() throws Exception {
+        store.writeAll(gallery("a"));
+
+        GalleryStore.ModelInfo info = store.readModelInfo();
+        assertTrue(info.matches(EmbeddingModel.Spec.FACENET));
+    }
+
+    @Test
+    public void readModelInfo_recordsEnrollmentModel() throws Exception {
+        store.writeAll(gallery("a"), EmbeddingModel.Spec.MOBILE_FACENET);
+
+        GalleryStore.ModelInfo info = new GalleryStore(dir).readModelInfo();
+        assertTrue(info.matches(EmbeddingModel.Spec.MOBILE_FACENET));
+        assertFalse(info.matches(EmbeddingModel.Spec.FACENET));
+    }
+}
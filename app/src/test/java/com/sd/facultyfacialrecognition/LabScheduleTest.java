@@ -0,0 +1,83 @@
+package com.sd.facultyfacialrecognition;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+
+import static org.junit.Assert.*;
+
+/**
+ * LabSchedule parsing and the current-and-next lookup behind the hot tier.
+ */
+public class LabScheduleTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    // 2024-01-15 is a Monday
+    private static final LocalDateTime MONDAY_0900 = LocalDateTime.of(2024, 1, 15, 9, 0);
+
+    private LabSchedule schedule(String json) throws Exception {
+        File file = new File(folder.getRoot(), LabSchedule.FILE_NAME);
+        try (FileOutputStream fos = new FileOutputStream(file)) {
+            fos.write(json.getBytes(StandardCharsets.UTF_8));
+        }
+        return LabSchedule.load(file);
+    }
+
+    private static final String TIMETABLE = "{ \"CpeLab\": ["
+            + "{ \"faculty\": \"Ana\", \"day\": \"MONDAY\", \"start\": \"08:00\", \"end\": \"10:30\" },"
+            + "{ \"faculty\": \"Ben\", \"day\": \"monday\", \"start\": \"10:30\", \"end\": \"12:00\" },"
+            + "{ \"faculty\": \"Cy\", \"day\": \"MONDAY\", \"start\": \"10:30\", \"end\": \"11:00\" },"
+            + "{ \"faculty\": \"Dee\", \"day\": \"MONDAY\", \"start\": \"13:00\", \"end\": \"15:00\" },"
+            + "{ \"faculty\": \"Eve\", \"day\": \"TUESDAY\", \"start\": \"09:00\", \"end\": \"10:00\" },"
+            + "{ \"faculty\": \"Bad\", \"day\": \"FUNDAY\", \"start\": \"09:00\", \"end\": \"10:00\" }"
+            + "], \"EceLab\": ["
+            + "{ \"faculty\": \"Fay\", \"day\": \"MONDAY\", \"start\": \"08:00\", \"end\": \"10:00\" }"
+            + "] }";
+
+    @Test
+    public void currentAndEveryoneInNextSlot() throws Exception {
+        LabSchedule schedule = schedule(TIMETABLE);
+
+        assertEquals(new HashSet<>(Arrays.asList("Ana", "Ben", "Cy")), schedule.currentAndNext("CpeLab", MONDAY_0900));
+    }
+
+    @Test
+    public void slotEnd_isExclusive() throws Exception {
+        LabSchedule schedule = schedule(TIMETABLE);
+
+        assertEquals(new HashSet<>(Arrays.asList("Ben", "Cy", "Dee")),
+                schedule.currentAndNext("CpeLab", MONDAY_0900.withHour(10).withMinute(30)));
+    }
+
+    @Test
+    public void afterLastSlot_isEmpty() throws Exception {
+        LabSchedule schedule = schedule(TIMETABLE);
+
+        assertTrue(schedule.currentAndNext("CpeLab", MONDAY_0900.withHour(16)).isEmpty());
+    }
+
+    @Test
+    public void otherDayAndLab_areSeparate() throws Exception {
+        LabSchedule schedule = schedule(TIMETABLE);
+
+        assertEquals(Collections.singleton("Eve"), schedule.currentAndNext("CpeLab", MONDAY_0900.plusDays(1)));
+        assertEquals(Collections.singleton("Fay"), schedule.currentAndNext("EceLab", MONDAY_0900));
+        assertTrue(schedule.currentAndNext("NoSuchLab", MONDAY_0900).isEmpty());
+    }
+
+    @Test
+    public void missingOrBrokenFile_isEmpty() throws Exception {
+        assertTrue(LabSchedule.load(new File(folder.getRoot(), "absent.json")).currentAndNext("CpeLab", MONDAY_0900).isEmpty());
+        assertTrue(schedule("{ not json").currentAndNext("CpeLab", MONDAY_0900).isEmpty());
+    }
+}
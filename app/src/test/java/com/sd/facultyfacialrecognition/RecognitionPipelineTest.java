@@ -0,0 +1,64 @@
+package com.sd.facultyfacialrecognition;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * RecognitionPipeline hand-off: recognition always moves on to the newest frame.
+ */
+public class RecognitionPipelineTest {
+
+    @Test
+    public void backlog_keepsOnlyLatestFrame() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch proceed = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(2);
+        List<CascadeFaceDetector.Result> seen = Collections.synchronizedList(new ArrayList<>());
+
+        RecognitionPipeline pipeline = new RecognitionPipeline(result -> {
+            seen.add(result);
+            started.countDown();
+            try {
+                proceed.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            done.countDown();
+        });
+
+        CascadeFaceDetector.Result first = new CascadeFaceDetector.Result(640, 480);
+        CascadeFaceDetector.Result stale = new CascadeFaceDetector.Result(640, 480);
+        CascadeFaceDetector.Result latest = new CascadeFaceDetector.Result(640, 480);
+
+        pipeline.submit(first, 0);
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        // Both arrive while the first is still being recognized; only the newer one is kept
+        pipeline.submit(stale, 0);
+        pipeline.submit(latest, 0);
+        proceed.countDown();
+
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        pipeline.shutdown();
+        assertEquals(Arrays.asList(first, latest), seen);
+    }
+
+    @Test
+    public void submitAfterShutdown_isNotRecognized() throws Exception {
+        List<CascadeFaceDetector.Result> seen = Collections.synchronizedList(new ArrayList<>());
+        RecognitionPipeline pipeline = new RecognitionPipeline(seen::add);
+
+        pipeline.shutdown();
+        pipeline.submit(new CascadeFaceDetector.Result(640, 480), 0);
+        Thread.sleep(100);
+
+        assertTrue(seen.isEmpty());
+    }
+}
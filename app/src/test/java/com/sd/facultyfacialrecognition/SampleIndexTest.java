@@ -0,0 +1,105 @@
+package com.sd.facultyfacialrecognition;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+/**
+ * SampleIndex sizing and k-nearest search.
+ */
+public class SampleIndexTest {
+
+    private static SampleIndex mixedIndex() {
+        // a and c are 2-d like the first sample; b's only sample is 3-d and must be left out
+        Map<String, List<float[]>> samples = new LinkedHashMap<>();
+        samples.put("a", Arrays.asList(new float[]{1f, 0f}, new float[]{0f, 1f}));
+        samples.put("b", Collections.singletonList(new float[]{1f, 0f, 0f}));
+        samples.put("c", Arrays.asList(new float[]{0f, 1f, 0f}, new float[]{1f, 1f}));
+        return new SampleIndex(samples);
+    }
+
+    @Test
+    public void mismatchedDimension_isLeftOut() {
+        SampleIndex index = mixedIndex();
+
+        assertEquals(2, index.dimension());
+        assertEquals(3, index.size());
+        assertArrayEquals(new String[]{"a", "c"}, index.labels());
+        assertEquals("a", index.labelAt(0));
+        assertEquals("a", index.labelAt(1));
+        assertEquals("c", index.labelAt(2));
+
+        float[] row = new float[2];
+        index.copySample(2, row);
+        assertArrayEquals(new float[]{1f, 1f}, row, 0f);
+    }
+
+    @Test
+    public void emptyLists_areLeftOut() {
+        Map<String, List<float[]>> samples = new LinkedHashMap<>();
+        samples.put("empty", Collections.emptyList());
+        samples.put("a", Collections.singletonList(new float[]{0.5f, 0.5f}));
+        SampleIndex index = new SampleIndex(samples);
+
+        assertEquals(1, index.size());
+        assertArrayEquals(new String[]{"a"}, index.labels());
+    }
+
+    @Test
+    public void topK_isClosestFirst() {
+        SampleIndex index = mixedIndex();
+        int[] rows = new int[2];
+        float[] dist = new float[2];
+
+        int found = index.topK(new float[]{1f, 0f}, 2, rows, dist, -1);
+
+        assertEquals(2, found);
+        assertEquals(0, rows[0]);
+        assertEquals(0f, dist[0], 1e-6f);
+        assertEquals(2, rows[1]);
+        assertEquals(1f, dist[1], 1e-6f);
+    }
+
+    @Test
+    public void topK_skipsExcludedRow() {
+        SampleIndex index = mixedIndex();
+        int[] rows = new int[1];
+        float[] dist = new float[1];
+
+        index.topK(new float[]{1f, 0f}, 1, rows, dist, 0);
+
+        assertEquals(2, rows[0]);
+    }
+
+    @Test
+    public void topK_ignoresWrongSizedQuery() {
+        assertEquals(0, mixedIndex().topK(new float[]{1f, 0f, 0f}, 2, new int[2], new float[2], -1));
+    }
+
+    @Test
+    public void topKBatch_matchesTopK() {
+        SampleIndex index = mixedIndex();
+        float[][] queries = {{1f, 0f}, null, {0.1f, 0.9f}};
+        int k = 2;
+        int[][] rows = new int[queries.length][k];
+        float[][] dist = new float[queries.length][k];
+        int[] found = new int[queries.length];
+
+        index.topKBatch(queries, k, rows, dist, found);
+
+        assertEquals(0, found[1]);
+        for (int q : new int[]{0, 2}) {
+            int[] singleRows = new int[k];
+            float[] singleDist = new float[k];
+            assertEquals(index.topK(queries[q], k, singleRows, singleDist, -1), found[q]);
+            assertArrayEquals(singleRows, rows[q]);
+            assertArrayEquals(singleDist, dist[q], 1e-6f);
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package com.sd.facultyfacialrecognition;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+/**
+ * TieredMatcher hot-tier answers, their runner-up from outside the hot tier, and the cold fallback.
+ */
+public class TieredMatcherTest {
+
+    // The scheduled professor, an enrolled lookalike and Unknown, in 2-d
+    private static final float[] PROF = {0f, 0f};
+    private static final float[] LOOKALIKE = {0.5f, 0f};
+    private static final float[] UNKNOWN = {3f, 3f};
+
+    private static TieredMatcher tiered() {
+        Map<String, float[]> all = new HashMap<>();
+        all.put("prof", PROF);
+        all.put("lookalike", LOOKALIKE);
+        all.put("Unknown", UNKNOWN);
+        FaceMatcher cold = new FaceMatcher(FaceMatcher.Mode.CENTROID, all, null);
+        FaceMatcher hot = new FaceMatcher(FaceMatcher.Mode.CENTROID,
+                Collections.singletonMap("prof", PROF), null);
+        return new TieredMatcher(hot, Collections.singleton("prof"), cold);
+    }
+
+    @Test
+    public void hotAnswer_carriesOutsiderAsRunnerUp() {
+        List<FaceMatcher.Match> ranking = tiered().rank(new float[]{-0.1f, 0f});
+
+        assertEquals(2, ranking.size());
+        assertEquals("prof", ranking.get(0).name);
+        assertEquals("lookalike", ranking.get(1).name);
+        assertEquals(0.6f, ranking.get(1).distance, 1e-5f);
+    }
+
+    @Test
+    public void closerOutsider_fallsBackToCold() {
+        // Within the hot accept distance of prof, but nearer the lookalike
+        List<FaceMatcher.Match> ranking = tiered().rank(new float[]{0.3f, 0f});
+
+        assertEquals("lookalike", ranking.get(0).name);
+        assertEquals(3, ranking.size());
+    }
+
+    @Test
+    public void unconfidentHot_fallsBackToCold() {
+        List<FaceMatcher.Match> ranking = tiered().rank(new float[]{2.9f, 2.9f});
+
+        assertEquals("Unknown", ranking.get(0).name);
+        assertEquals(3, ranking.size());
+    }
+
+    @Test
+    public void noHotTier_searchesCold() {
+        Map<String, float[]> all = new HashMap<>();
+        all.put("prof", PROF);
+        all.put("lookalike", LOOKALIKE);
+        TieredMatcher matcher = new TieredMatcher(null, Collections.emptySet(),
+                new FaceMatcher(FaceMatcher.Mode.CENTROID, all, null));
+
+        assertEquals(0, matcher.getHotSize());
+        assertEquals("prof", matcher.rank(new float[]{0.1f, 0f}).get(0).name);
+    }
+
+    @Test
+    public void rankAll_matchesRank() {
+        TieredMatcher matcher = tiered();
+        List<float[]> probes = Arrays.asList(new float[]{-0.1f, 0f}, new float[]{0.3f, 0f}, new float[]{2.9f, 2.9f});
+
+        List<List<FaceMatcher.Match>> all = matcher.rankAll(probes);
+
+        assertEquals(probes.size(), all.size());
+        for (int i = 0; i < probes.size(); i++) {
+            List<FaceMatcher.Match> single = matcher.rank(probes.get(i));
+            assertEquals(single.size(), all.get(i).size());
+            for (int j = 0; j < single.size(); j++) {
+                assertEquals(single.get(j).name, all.get(i).get(j).name);
+                assertEquals(single.get(j).distance, all.get(i).get(j).distance, 1e-6f);
+            }
+        }
+    }
+
+    @Test
+    public void lookalikeOfScheduledProfessor_isNotDecided() {
+        TieredMatcher matcher = tiered();
+        EvidenceAccumulator evidence = new EvidenceAccumulator();
+        for (int i = 0; i < 50; i++) {
+            // Probes that sit between the two, slightly on the professor's side
+            evidence.update(1, matcher.rank(new float[]{0.22f, 0f}), i * 100L);
+        }
+        assertFalse(evidence.isDecided());
+    }
+}